@@ -8,13 +8,11 @@
 package de.unistuttgart.informatik.fius.icge;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 
 import de.unistuttgart.informatik.fius.icge.course.TaskTemplate;
+import de.unistuttgart.informatik.fius.icge.simulation.ProgramRunner;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionManager;
-import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+import de.unistuttgart.informatik.fius.icge.territory.Bounds;
 import de.unistuttgart.informatik.fius.icge.workbench.Workbench;
 
 /**
@@ -27,6 +25,7 @@ public class Engine {
     
     private Workbench _workbench;
     private InspectionManager _inspectionManager;
+    private final ProgramRunner _taskRunner = new ProgramRunner("Task");
     
     private boolean started = false;
     
@@ -55,23 +54,65 @@ public class Engine {
         
     }
     
+    /**
+     * Runs the engine without a workbench: the test of every solution is run in fast-forward mode and the results are
+     * printed.
+     * 
+     * @return true iff all tests have passed
+     */
+    public boolean startHeadless() {
+        if (this.started) throw new IllegalStateException("Already started.");
+        if (e != null) throw new IllegalStateException("Only one engine should be running at a time.");
+        
+        e = this;
+        
+        this.started = true;
+        
+        boolean[] passed = { true };
+        try {
+            SolutionLoader.loadSolutions(task -> {
+                if (!this.testHeadless(task)) {
+                    passed[0] = false;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return passed[0];
+    }
+    
+    private boolean testHeadless(Class<? extends TaskTemplate> task) {
+        String name = task.getSimpleName();
+        try {
+            task.newInstance().testHeadless();
+            System.out.println(name + " completed :-)");
+            return true;
+        } catch (AssertionError e) {
+            System.out.println(name + ": Test failed!");
+            System.out.println(e.getMessage());
+            e.printStackTrace();
+        } catch (InstantiationException | IllegalAccessException e) {
+            System.out.println(name + ": Internal error!");
+            e.printStackTrace();
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.out.println(name + ": " + e.toString());
+        }
+        return false;
+    }
+    
     private void addTask(Class<? extends TaskTemplate> task) {
         String name = task.getSimpleName();
         this._workbench.addDropDownAction(name, () -> {
-            new Thread(() -> {
+            this._taskRunner.start(() -> {
                 try {
                     TaskTemplate obj = task.newInstance();
                     this._workbench.setSimulation(obj.getSimulation());
-                    Collection<WorldObject> wobs = obj.getSimulation().territory().worldObjects();
-                    if (!wobs.isEmpty()) {
-                        Comparator<WorldObject> compCol = (a, b) -> a.column - b.column;
-                        Comparator<WorldObject> compRow = (a, b) -> a.row - b.row;
-                        int xMin = Collections.min(wobs, compCol).column;
-                        int xMax = Collections.max(wobs, compCol).column;
-                        int yMin = Collections.min(wobs, compRow).row;
-                        int yMax = Collections.max(wobs, compRow).row;
-                        this._workbench.setCenteredColumn(0.5f * (xMax + xMin));
-                        this._workbench.setCenteredRow(0.5f * (yMax + yMin));
+                    Bounds bounds = obj.getSimulation().territory().bounds();
+                    if (bounds != null) {
+                        this._workbench.setCenteredColumn(bounds.centerColumn());
+                        this._workbench.setCenteredRow(bounds.centerRow());
                     }
                     try {
                         obj.test();
@@ -88,7 +129,7 @@ public class Engine {
                     this._workbench.println("Internal error!");
                     e.printStackTrace();
                 }
-            }).start();
+            });
         });
     }
     
@@ -10,6 +10,7 @@ package de.unistuttgart.informatik.fius.icge.animations;
 import java.util.HashMap;
 
 import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 
 /**
@@ -43,9 +44,27 @@ public class AnimatedTerritory {
      * @return The new animated territory
      */
     public AnimatedTerritory setTerritory(Territory tty) {
+        return this.setTerritory(tty, TerritoryDelta.between(this._tty, tty));
+    }
+
+    /**
+     * Get a new animated territory from the current one with a new territory.
+     * <p>
+     * Only the animations of the world objects that are removed or replaced by the delta are dropped.
+     * 
+     * @param tty
+     *            The new territory
+     * @param delta
+     *            The changes from the current to the new territory
+     * @return The new animated territory
+     */
+    public AnimatedTerritory setTerritory(Territory tty, TerritoryDelta delta) {
         AnimatedTerritory result = new AnimatedTerritory(tty);
         result._runningAnimations = this._runningAnimations;
-        result._runningAnimations.keySet().removeIf(wob -> !tty.contains(wob));
+        if (!result._runningAnimations.isEmpty()) {
+            delta.removed().forEach(result._runningAnimations::remove);
+            delta.replaced().forEach(replacement -> result._runningAnimations.remove(replacement.oldWob));
+        }
         return result;
     }
 
@@ -57,7 +76,7 @@ public class AnimatedTerritory {
      * @return A new animated territory with all finished animations removed
      */
     public AnimatedTerritory removeFinished(int tick) {
-        AnimatedTerritory result = this.setTerritory(this._tty);
+        AnimatedTerritory result = this.setTerritory(this._tty, TerritoryDelta.EMPTY);
         this._runningAnimations.values().removeIf(anim -> anim.end <= tick);
         return result;
     }
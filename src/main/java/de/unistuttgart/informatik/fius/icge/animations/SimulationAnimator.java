@@ -13,10 +13,11 @@ import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MovableEnti
 import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MoveEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickCommitEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickEvent;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 
-public class SimulationAnimator {
+public class SimulationAnimator implements AutoCloseable {
     
     private final Simulation _sim;
     private AnimatedTerritory _animated;
@@ -30,6 +31,14 @@ public class SimulationAnimator {
         this.initListener();
     }
     
+    /**
+     * Stops animating, such that this animator doesn't listen to its simulation anymore
+     */
+    @Override
+    public void close() {
+        this._eventHandler.close();
+    }
+    
     public Simulation simulation() {
         return this._sim;
     }
@@ -49,30 +58,37 @@ public class SimulationAnimator {
     }
 
     private void initListener() {
-        this._eventHandler.addListener(SimulationEvent.class, ev -> {
+        this._eventHandler.addListener(SimulationEvent.class, this._sim, ev -> {
             if (!(ev instanceof SimulationEvent)) return true;
             SimulationEvent se = (SimulationEvent) ev;
-            if (se.simulation != this._sim) return true;
             if (se instanceof TickEvent) {
                 this._animated = this._animated.removeFinished(se.simulation.tickCount());
             }
             if (se.simulation.territory() == this._animated.territory()) return true;
             AnimatedTerritory nextAnimated = this._animated.setTerritory(se.simulation.territory());
             if (se instanceof MovableEntityEvent) {
-                MovableEntityEvent mee = (MovableEntityEvent) se;
-                int begin = mee.simulation.tickCount();
-                int end = mee.entity.getMoveEndTick();
-                if (end <= begin) {
-                    end = begin + 1;
+                animate(nextAnimated, (MovableEntityEvent) se);
+            } else if (se instanceof TickCommitEvent) {
+                for (MovableEntityEvent mee : ((TickCommitEvent) se).eventsOf(MovableEntityEvent.class)) {
+                    animate(nextAnimated, mee);
                 }
-                WorldObject wob = mee.entity.worldObject();
-                Animation anim = new Animation(begin, end, animationType(mee));
-                nextAnimated.setAnimation(wob, anim);
             }
             this._animated = nextAnimated;
             return true;
         });
     }
+
+    private static void animate(AnimatedTerritory animated, MovableEntityEvent mee) {
+        WorldObject wob = mee.simulation.worldObject(mee.entity);
+        if (wob == null) return; // the entity died later in the same commit
+        int begin = mee.simulation.tickCount();
+        int end = mee.entity.getMoveEndTick();
+        if (end <= begin) {
+            end = begin + 1;
+        }
+        Animation anim = new Animation(begin, end, animationType(mee));
+        animated.setAnimation(wob, anim);
+    }
     
     private static AnimationType animationType(MovableEntityEvent mee) {
         if (mee instanceof MoveEvent) return AnimationType.MOVE;
@@ -31,6 +31,25 @@ abstract public class TaskTemplate {
     /** The method to verify the solution */
     public abstract void test();
 
+    /**
+     * Runs {@link #test() test} without anybody watching: the simulation is put into fast-forward mode and resumed, so the
+     * entities don't wait for a timer but the ticks and events are the same. Afterwards, the previous mode is restored and the
+     * simulation is paused again if it hasn't been running before.
+     */
+    public void testHeadless() {
+        boolean fastForward = this.simulation.fastForward();
+        this.simulation.setFastForward(true);
+        boolean resumed = this.simulation.resume();
+        try {
+            this.test();
+        } finally {
+            if (resumed) {
+                this.simulation.pause();
+            }
+            this.simulation.setFastForward(fastForward);
+        }
+    }
+
     /**
      * Get's {@link #simulation simulation}
      *
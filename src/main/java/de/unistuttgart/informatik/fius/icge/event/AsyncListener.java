@@ -0,0 +1,258 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+import java.awt.EventQueue;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+/**
+ * An `EventListener` that handles the events asynchronously: It puts them into a bounded queue and returns immediately, and
+ * another `EventListener` handles them in order on an `Executor`, e.g. on the event dispatch thread. Hence a slow listener,
+ * like one that updates a UI, doesn't stall the thread that raises the events.
+ *
+ * Since the events are handled later, the listener may see a state of their source that is newer than the event. Moreover,
+ * `EventDispatcher.afterwards()` can't be called while handling them. If the wrapped listener returns `false`, it isn't called
+ * again and this listener is removed the next time it receives an event.
+ */
+public class AsyncListener implements EventListener {
+
+    /**
+     * What to do with an event if the queue is full
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until there is space in the queue. The raising thread is stalled, so the events of its source are throttled to
+         * the speed of the listener. This deadlocks if handling the events needs a lock that the raising thread holds. If the
+         * raising thread is interrupted while waiting, the event is dropped and the thread stays interrupted.
+         */
+        BLOCK,
+        /** Drop the oldest queued event */
+        DROP_OLDEST,
+        /**
+         * Replace the newest queued event of the same class, e.g. an older state by a newer one. If there is none, the oldest
+         * queued event is dropped.
+         */
+        COALESCE
+    }
+
+    private final EventListener _listener;
+    private final Executor _executor;
+    private final int _capacity;
+    private final OverflowPolicy _policy;
+    private final boolean _onEventDispatchThread;
+    private final ArrayDeque<Event> _queue = new ArrayDeque<>();
+    /** Whether a drain of the queue is scheduled or running */
+    private boolean _draining = false;
+    private boolean _closed = false;
+    private int _maxDepth = 0;
+    private long _handled = 0;
+    private long _dropped = 0;
+    private long _coalesced = 0;
+
+    /**
+     * Creates a new asynchronous listener
+     *
+     * @param listener
+     *            The listener that handles the events
+     * @param executor
+     *            The executor to handle the events on. The events are handled one after the other in the order they are
+     *            received, even if the executor has several threads.
+     * @param capacity
+     *            The maximum number of queued events
+     * @param policy
+     *            What to do with an event if the queue is full
+     */
+    public AsyncListener(EventListener listener, Executor executor, int capacity, OverflowPolicy policy) {
+        this(listener, executor, capacity, policy, false);
+    }
+
+    private AsyncListener(EventListener listener, Executor executor, int capacity, OverflowPolicy policy,
+            boolean onEventDispatchThread) {
+        if ((listener == null) || (executor == null) || (capacity <= 0) || (policy == null)) {
+            throw new IllegalArgumentException();
+        }
+        this._listener = listener;
+        this._executor = executor;
+        this._capacity = capacity;
+        this._policy = policy;
+        this._onEventDispatchThread = onEventDispatchThread;
+    }
+
+    /**
+     * Creates a new asynchronous listener that handles the events on the event dispatch thread of Swing and AWT. If an event is
+     * raised on the event dispatch thread itself, e.g. by a tool, it is queued even if the queue is full and the policy is
+     * `BLOCK`.
+     *
+     * @param listener
+     *            The listener that handles the events
+     * @param capacity
+     *            The maximum number of queued events
+     * @param policy
+     *            What to do with an event if the queue is full. If the event dispatch thread may wait for the source of the
+     *            events, e.g. for the lock of a `Simulation`, `BLOCK` can deadlock.
+     * @return The created listener
+     */
+    public static AsyncListener onEventDispatchThread(EventListener listener, int capacity, OverflowPolicy policy) {
+        return new AsyncListener(listener, EventQueue::invokeLater, capacity, policy, true);
+    }
+
+    @Override
+    public boolean handle(Event e) {
+        boolean schedule;
+        synchronized (this) {
+            if (this._closed) return false;
+            if (this._queue.size() >= this._capacity) {
+                this.overflow(e);
+            } else {
+                this._queue.add(e);
+            }
+            this._maxDepth = Math.max(this._maxDepth, this._queue.size());
+            schedule = !this._draining;
+            this._draining = true;
+        }
+        if (schedule) {
+            this.schedule();
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of queued events
+     */
+    public synchronized int queueDepth() {
+        return this._queue.size();
+    }
+
+    /**
+     * @return The highest number of queued events so far
+     */
+    public synchronized int maxQueueDepth() {
+        return this._maxDepth;
+    }
+
+    /**
+     * @return The number of events that have been handled
+     */
+    public synchronized long handledEvents() {
+        return this._handled;
+    }
+
+    /**
+     * @return The number of events that have been dropped because the queue was full, including those whose raising thread
+     *         was interrupted while waiting for space in the queue
+     */
+    public synchronized long droppedEvents() {
+        return this._dropped;
+    }
+
+    /**
+     * @return The number of events that have replaced a queued event because the queue was full
+     */
+    public synchronized long coalescedEvents() {
+        return this._coalesced;
+    }
+
+    // private
+
+    /**
+     * Makes space for an event in the full queue according to the policy. Has to be called while holding the lock.
+     */
+    private void overflow(Event e) {
+        switch (this._policy) {
+            case BLOCK:
+                while (!this._closed && (this._queue.size() >= this._capacity) && !this.mightDeadlock()) {
+                    try {
+                        this.wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        ++this._dropped; // queueing it would exceed the capacity
+                        return;
+                    }
+                }
+                if (!this._closed) {
+                    this._queue.add(e);
+                }
+                return;
+            case COALESCE:
+                for (Iterator<Event> it = this._queue.descendingIterator(); it.hasNext();) {
+                    if (it.next().getClass() == e.getClass()) {
+                        it.remove();
+                        this._queue.add(e);
+                        ++this._coalesced;
+                        return;
+                    }
+                }
+                this.dropOldest(e); // there is no event to coalesce with
+                return;
+            case DROP_OLDEST:
+            default:
+                this.dropOldest(e);
+        }
+    }
+
+    /**
+     * Replaces the oldest queued event by a new one. Has to be called while holding the lock.
+     */
+    private void dropOldest(Event e) {
+        this._queue.poll();
+        this._queue.add(e);
+        ++this._dropped;
+    }
+
+    /**
+     * @return true iff the current thread would wait for itself when waiting for space in the queue
+     */
+    private boolean mightDeadlock() {
+        return this._onEventDispatchThread && EventQueue.isDispatchThread();
+    }
+
+    private void schedule() {
+        try {
+            this._executor.execute(this::drain);
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                this._draining = false; // e.g. the executor has been shut down, so try again with the next event
+            }
+            throw e;
+        }
+    }
+
+    private void drain() {
+        boolean done = false;
+        try {
+            while (true) {
+                Event e;
+                synchronized (this) {
+                    e = this._queue.poll();
+                    if ((e == null) || this._closed) {
+                        this._draining = false;
+                        done = true;
+                        return;
+                    }
+                    this.notifyAll();
+                }
+                boolean keep = this._listener.handle(e);
+                synchronized (this) {
+                    ++this._handled;
+                    if (!keep) {
+                        this._closed = true;
+                        this._queue.clear();
+                        this.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            if (!done) {
+                // the listener has thrown, so continue with the next event in a new task
+                this.schedule();
+            }
+        }
+    }
+}
@@ -7,4 +7,13 @@
 
 package de.unistuttgart.informatik.fius.icge.event;
 
-public interface Event {}
+public interface Event {
+
+    /**
+     * @return The object this event belongs to, e.g. the `Simulation` it happened in, or `null`. Listeners can listen for the
+     *         events of a single source only, see `EventHandler.addListener(Class, Object, EventListener)`.
+     */
+    default Object source() {
+        return null;
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.unistuttgart.informatik.fius.icge.event.EventHandler.Listening;
+
+/**
+ * An `EventBus` delivers the `Event`s of one `EventSource`, e.g. of one `Simulation`, to the listeners that listen to that
+ * source. After its own listeners, a bus forwards every event to the listeners that listen to all sources, which are
+ * registered at a global bus behind `EventDispatcher`. No bus lock is held while a listener is called, so the events of
+ * independent sources are delivered in parallel, even to the listeners of the global bus. Only each listener handles one
+ * event at a time.
+ *
+ * The listeners are indexed by the type they listen for and by the source they listen to. Delivering an `Event` looks up the
+ * listeners of each supertype of its class, which are resolved once per class, so listeners for other types or sources don't
+ * cost anything. The listeners of a type and source are kept in an array that is published as an immutable snapshot, so
+ * delivering neither takes the lock of the registry nor allocates, and adding or removing a listener doesn't copy the array.
+ *
+ * A bus only references the listeners weakly, such that an `EventHandler` that isn't closed and its listeners can be collected
+ * as soon as their owner is unreachable. The entries of collected listeners are removed the next time a listener is added to
+ * any bus.
+ */
+public class EventBus {
+
+    /** The supertypes of every raised event class that are events themselves, including the class itself */
+    private static final ConcurrentHashMap<Class<?>, Class<?>[]> EVENT_TYPES = new ConcurrentHashMap<>();
+    /** The slots of the collected listenings of all buses */
+    private static final ReferenceQueue<Listening> COLLECTED = new ReferenceQueue<>();
+
+    /** The listeners by the type they listen for, changed while holding `_registryLock` */
+    private final ConcurrentHashMap<Class<?>, Subscriptions> _subscriptions = new ConcurrentHashMap<>();
+    private final Object _registryLock = new Object();
+
+    /**
+     * Raises an event on this bus and afterwards runs the tasks that have been scheduled via `EventDispatcher.afterwards()`.
+     * If this method is called while another event is handled in the same thread, the event is queued, see
+     * `EventDispatcher.raise(Event)`.
+     *
+     * @param e
+     *            The event to raise
+     */
+    public void raise(Event e) {
+        EventDispatcher.raise(this, e, () -> {});
+    }
+
+    /**
+     * Raises an event on this bus, then runs an `afterTask` and finally runs the tasks that have been scheduled via
+     * `EventDispatcher.afterwards()`. If this method is called while another event is handled in the same thread, the event
+     * is queued, see `EventDispatcher.raise(Event)`.
+     *
+     * @param e
+     *            The event to raise
+     * @param afterTask
+     *            The task to run after the handling of that event
+     */
+    public void raise(Event e, Runnable afterTask) {
+        EventDispatcher.raise(this, e, afterTask);
+    }
+
+    // package private
+
+    /**
+     * Forwards an event to the listeners of this bus that listen for it. Types without listeners are skipped by a single
+     * lookup, and every listener is called while holding only its own lock, such that it handles one event at a time.
+     */
+    void deliver(Event e) {
+        if (this._subscriptions.isEmpty()) return;
+        Class<?>[] types = eventTypes(e.getClass());
+        Object source = e.source();
+        for (Class<?> type : types) {
+            Subscriptions subscriptions = this._subscriptions.get(type);
+            if (subscriptions == null) continue;
+            deliver(subscriptions.anySource, e);
+            if (source != null) {
+                SlotList listenings = subscriptions.bySource.get(source);
+                if (listenings != null) {
+                    deliver(listenings, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a listening of a registered handler, unless it has already been added
+     */
+    void add(Listening listening) {
+        expungeCollected();
+        synchronized (this._registryLock) {
+            if ((listening.slot != null) || listening.removed || !listening.handler._registered) return;
+            Subscriptions subscriptions = this._subscriptions.computeIfAbsent(listening.listensFor,
+                    type -> new Subscriptions(type));
+            SlotList listenings = subscriptions.anySource;
+            if (listening.source != null) {
+                listenings = subscriptions.bySource.computeIfAbsent(listening.source,
+                        source -> new SlotList(subscriptions, source));
+            }
+            listening.slot = listenings.add(listening);
+        }
+    }
+
+    void remove(Listening listening) {
+        synchronized (this._registryLock) {
+            Slot slot = listening.slot;
+            if (slot == null) return;
+            listening.slot = null;
+            slot.clear(); // such that it isn't enqueued when the listening is collected
+            this.remove(slot);
+        }
+    }
+
+    // private
+
+    /**
+     * Removes a slot from its list and drops the list and its subscriptions if they are empty. Has to be called while holding
+     * `_registryLock`.
+     */
+    private void remove(Slot slot) {
+        if (slot.index < 0) return;
+        SlotList listenings = slot.list;
+        listenings.remove(slot);
+        Subscriptions subscriptions = listenings.subscriptions;
+        if (listenings.isEmpty() && (listenings.source != null)) {
+            subscriptions.bySource.remove(listenings.source, listenings);
+        }
+        if (subscriptions.anySource.isEmpty() && subscriptions.bySource.isEmpty()) {
+            this._subscriptions.remove(subscriptions.type, subscriptions);
+        }
+    }
+
+    /**
+     * Removes the slots of the listenings that have been collected from all buses
+     */
+    private static void expungeCollected() {
+        Reference<? extends Listening> ref;
+        while ((ref = COLLECTED.poll()) != null) {
+            Slot slot = (Slot) ref;
+            EventBus bus = slot.list.subscriptions.bus();
+            synchronized (bus._registryLock) {
+                bus.remove(slot);
+            }
+        }
+    }
+
+    private static void deliver(SlotList listenings, Event e) {
+        SlotList.Snapshot snapshot = listenings.snapshot;
+        for (int i = 0; i < snapshot.size; ++i) {
+            Slot slot = snapshot.slots[i];
+            Listening listening = slot == null ? null : slot.get();
+            if (listening == null) continue;
+            boolean keep;
+            synchronized (listening) {
+                if (listening.removed || !listening.handler._registered) continue;
+                keep = listening.listener.handle(e);
+            }
+            if (!keep) {
+                listening.handler.removeListener(listening.listener);
+            }
+        }
+    }
+
+    private static Class<?>[] eventTypes(Class<?> eventClass) {
+        Class<?>[] types = EVENT_TYPES.get(eventClass);
+        if (types == null) {
+            LinkedHashSet<Class<?>> supertypes = new LinkedHashSet<>();
+            collectEventTypes(eventClass, supertypes);
+            types = supertypes.toArray(new Class<?>[supertypes.size()]);
+            EVENT_TYPES.put(eventClass, types);
+        }
+        return types;
+    }
+
+    private static void collectEventTypes(Class<?> type, LinkedHashSet<Class<?>> supertypes) {
+        if ((type == null) || !Event.class.isAssignableFrom(type) || !supertypes.add(type)) return;
+        collectEventTypes(type.getSuperclass(), supertypes);
+        for (Class<?> iface : type.getInterfaces()) {
+            collectEventTypes(iface, supertypes);
+        }
+    }
+
+    /**
+     * The listeners for one type of events, split into the listeners for all sources and those for a single source
+     */
+    private final class Subscriptions {
+        final Class<?> type;
+        final SlotList anySource = new SlotList(this, null);
+        /** The listeners by their source, compared by `equals` */
+        final ConcurrentHashMap<Object, SlotList> bySource = new ConcurrentHashMap<>();
+
+        Subscriptions(Class<?> type) {
+            this.type = type;
+        }
+
+        EventBus bus() {
+            return EventBus.this;
+        }
+    }
+
+    /**
+     * The entry of a listening in a `SlotList`, which references it weakly
+     */
+    static final class Slot extends WeakReference<Listening> {
+        final SlotList list;
+        /** The index in the array of the list or `-1` if this slot has been removed, guarded by the registry lock */
+        int index;
+
+        Slot(Listening listening, SlotList list, int index) {
+            super(listening, COLLECTED);
+            this.list = list;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The listenings of one type and source. The slots are appended to an array and removed slots are cleared, such that
+     * the array is only copied when it is full or mostly empty. Every change publishes a new snapshot of the array and the
+     * number of used slots, which readers iterate without locking. Changes have to be made while holding the registry lock.
+     */
+    private static final class SlotList {
+        private static final int MIN_CAPACITY = 4;
+
+        final Subscriptions subscriptions;
+        final Object source;
+        volatile Snapshot snapshot = new Snapshot(new Slot[MIN_CAPACITY], 0);
+        private int _removed = 0;
+
+        SlotList(Subscriptions subscriptions, Object source) {
+            this.subscriptions = subscriptions;
+            this.source = source;
+        }
+
+        Slot add(Listening listening) {
+            Snapshot current = this.snapshot;
+            Slot[] slots = current.slots;
+            int size = current.size;
+            if (size == slots.length) {
+                // compact if at least half of the slots are removed, grow otherwise
+                slots = this.compact(this._removed >= (size / 2) ? slots.length : slots.length * 2);
+                size = size - this._removed;
+                this._removed = 0;
+            }
+            Slot slot = new Slot(listening, this, size);
+            slots[size] = slot; // not visible to readers of the current snapshot, which ends before it
+            this.snapshot = new Snapshot(slots, size + 1);
+            return slot;
+        }
+
+        void remove(Slot slot) {
+            Snapshot current = this.snapshot;
+            current.slots[slot.index] = null; // readers that still see the slot skip it, since its listening is removed
+            slot.index = -1;
+            ++this._removed;
+            if ((current.size - this._removed) == 0) {
+                this.snapshot = new Snapshot(new Slot[MIN_CAPACITY], 0);
+                this._removed = 0;
+            } else if ((current.size > MIN_CAPACITY) && (this._removed > ((current.size * 3) / 4))) {
+                int size = current.size - this._removed;
+                this.snapshot = new Snapshot(this.compact(Math.max(MIN_CAPACITY, size * 2)), size);
+                this._removed = 0;
+            }
+        }
+
+        boolean isEmpty() {
+            return this.snapshot.size == this._removed;
+        }
+
+        /**
+         * @return A new array with the given capacity that contains the slots that aren't removed, whose indices are updated
+         */
+        private Slot[] compact(int capacity) {
+            Snapshot current = this.snapshot;
+            Slot[] slots = new Slot[capacity];
+            int size = 0;
+            for (int i = 0; i < current.size; ++i) {
+                Slot slot = current.slots[i];
+                if (slot != null) {
+                    slot.index = size;
+                    slots[size++] = slot;
+                }
+            }
+            return slots;
+        }
+
+        static final class Snapshot {
+            final Slot[] slots;
+            final int size;
+
+            Snapshot(Slot[] slots, int size) {
+                this.slots = slots;
+                this.size = size;
+            }
+        }
+    }
+}
@@ -1,143 +1,184 @@
-/*
- * This source file is part of the FIUS ICGE project.
- * For more information see github.com/neumantm/ICGE
- *
- * Copyright (c) 2018 the ICGE project authors.
- */
-
-package de.unistuttgart.informatik.fius.icge.event;
-
-import java.lang.ref.WeakReference;
-import java.util.ArrayDeque;
-import java.util.ArrayList;
-
-/**
- * `EventDispatcher` is a class with only static methods where `EventHandler`s can be registered. If an `EventHandler` is
- * registered, every `Event` that is raised via the `EventDispatcher.raise()` method is forwarded to the `handle()` method of
- * the registered `EventHandler`. There can be arbitrarily many `EventHandler`s registered at the same time. The order in which
- * raised `Event`s are forwarded to them is unspecified.
- */
-public class EventDispatcher {
-
-    private static ArrayList<WeakReference<EventHandler>> _handlerRefs = new ArrayList<>();
-    private static ArrayDeque<Runnable> _afterwards = new ArrayDeque<>();
-    private static int _raiseRecursionDepth = 0;
-
-    /**
-     * Registers an `EventHandler` to the `EventDispatcher`. For details, see the JavaDoc of `EventDispatcher`
-     * 
-     * @param handler
-     *            The `EventHandler` to register
-     * @return true if the specified `EventHandler` wasn't already registered, false if it was already registered
-     */
-    public static synchronized boolean registerHandler(EventHandler handler) {
-        for (WeakReference<EventHandler> ref : _handlerRefs) {
-            if (ref.get() == handler) return false;
-        }
-        _handlerRefs.add(new WeakReference<>(handler));
-        return true;
-    }
-
-    /**
-     * Deregisters an `EventHandler` to the `EventDispatcher`. For details, see to JavaDoc of `EventDispatcher`.
-     * 
-     * @param handler
-     *            The `EventHandler` to deregister
-     * @return true if the specified `EventHandler` was registered, false if it wasn't
-     */
-    public static synchronized boolean deregisterHandler(EventHandler handler) {
-        return _handlerRefs.removeIf(ref -> {
-            EventHandler candidate = ref.get();
-            return candidate == null || candidate == handler;
-        });
-    }
-
-    /**
-     * Raises an event and afterwards runs the tasks that have been scheduled via the `afterwards()` method. This method mustn't
-     * be called while another event is handled in the same thread.
-     * 
-     * NOTE: If you want to raise an event (or perform some action that would raise an event) during the handling of an event,
-     * consider to call `EventDispatcher.afterwards()`.
-     * 
-     * @param e
-     *            The event to raise
-     */
-    public static synchronized void raise(Event e) throws RaiseAlreadyActive {
-        EventDispatcher.raise(e, () -> {});
-    }
-
-    /**
-     * Raises an event, then runs an `afterTask` and finally runs the tasks that have been scheduled via the `afterwards()`
-     * method. This method mustn't be called while another event is handled in the same thread.
-     * 
-     * NOTE: If you want to raise an event (or perform some action that would raise an event) during the handling of an event,
-     * consider to call `EventDispatcher.afterwards()`.
-     * 
-     * @param e
-     *            The event to raise
-     * @param afterTask
-     *            The task to run after the handling of that event
-     * @throws RaiseAlreadyActive
-     *             if another event is currently handled in the same thread
-     */
-    public static synchronized void raise(Event e, Runnable afterTask) throws RaiseAlreadyActive {
-        if (EventDispatcher._raiseRecursionDepth != 0) {
-            throw new RaiseAlreadyActive(); // recursive raise is not supported for now
-        }
-
-        // actual event hadling
-        ++EventDispatcher._raiseRecursionDepth;
-        try {
-            for (WeakReference<EventHandler> ref : new ArrayList<>(_handlerRefs)) {
-                EventHandler handler = ref.get();
-                if (handler == null) {
-                    _handlerRefs.remove(ref);
-                } else {
-                    handler.raise(e);
-                }
-            }
-        } finally {
-            --EventDispatcher._raiseRecursionDepth;
-        }
-
-        // First run the passed `afterTask` and then the tasks that have been scheduled via `EventDispatcher.afterwards()`
-        afterTask.run();
-        while (!_afterwards.isEmpty()) {
-            _afterwards.pop().run();
-        }
-    }
-
-    /**
-     * Schedules a `Runnable` that is run synchronously after the handling of the currently handled event. This method must be
-     * called during the handling of an event (i.e. during a call of `EventHandler.raise()`) and must be called from the thread
-     * in which that event is raised (and handled). If multiple `Runnable`s are scheduled this way, they are run in FIFO order
-     * (first in, first out).
-     * 
-     * @param rn
-     *            The runnable to schedule
-     */
-    public static synchronized void afterwards(Runnable rn) {
-        if (EventDispatcher._raiseRecursionDepth == 0) {
-            throw new RaiseNotActive(); // must have an active raise to schedule via `afterwards()`
-        }
-
-        _afterwards.add(rn);
-    }
-
-    // Exceptions
-
-    /**
-     * Exception that is thrown if an event is raised during the handling of another event in the same thread.
-     */
-    public static class RaiseAlreadyActive extends RuntimeException {
-        private static final long serialVersionUID = 7713141366627046771L;
-    }
-
-    /**
-     * Exception that is thrown if `EventDispatcher().afterwards()` is called while no event is handled in that thread.
-     */
-    public static class RaiseNotActive extends RuntimeException {
-        private static final long serialVersionUID = 2178481422042432110L;
-    }
-
-}
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+import java.util.ArrayDeque;
+
+import de.unistuttgart.informatik.fius.icge.event.EventHandler.Listening;
+
+/**
+ * `EventDispatcher` is a class with only static methods where `EventHandler`s can be registered. If an `EventHandler` is
+ * registered, every `Event` that is raised via the `EventDispatcher.raise()` method is forwarded to the listeners of the
+ * registered `EventHandler` that listen for it. There can be arbitrarily many `EventHandler`s registered at the same time. The
+ * order in which raised `Event`s are forwarded to them is unspecified.
+ *
+ * The `EventDispatcher` is a facade of the `EventBus`es: An `Event` whose source is an `EventSource` is raised on the bus of
+ * that source, and a listener for a single `EventSource` is registered at its bus. Listeners for all sources are registered at
+ * a global bus, which every other bus forwards its events to, so they see the events of all sources.
+ */
+public class EventDispatcher {
+
+    /** The bus of the listeners for all sources and of the events without an `EventSource` */
+    private static final EventBus GLOBAL = new EventBus();
+    private static final ThreadLocal<RaiseState> RAISE_STATE = ThreadLocal.withInitial(RaiseState::new);
+
+    /**
+     * Registers an `EventHandler` to the `EventDispatcher`. For details, see the JavaDoc of `EventDispatcher`
+     * 
+     * @param handler
+     *            The `EventHandler` to register
+     * @return true if the specified `EventHandler` wasn't already registered, false if it was already registered
+     */
+    public static boolean registerHandler(EventHandler handler) {
+        synchronized (handler) {
+            if (handler._registered) return false;
+            handler._registered = true;
+        }
+        for (Listening listening : handler._listenings) {
+            listening.bus.add(listening);
+        }
+        return true;
+    }
+
+    /**
+     * Deregisters an `EventHandler` to the `EventDispatcher`. For details, see to JavaDoc of `EventDispatcher`.
+     * 
+     * @param handler
+     *            The `EventHandler` to deregister
+     * @return true if the specified `EventHandler` was registered, false if it wasn't
+     */
+    public static boolean deregisterHandler(EventHandler handler) {
+        synchronized (handler) {
+            if (!handler._registered) return false;
+            handler._registered = false;
+        }
+        for (Listening listening : handler._listenings) {
+            listening.bus.remove(listening);
+        }
+        return true;
+    }
+
+    /**
+     * Raises an event and afterwards runs the tasks that have been scheduled via the `afterwards()` method.
+     * 
+     * If this method is called while another event is handled in the same thread, e.g. by a listener, the event is queued
+     * and handled after the current event and everything that has been queued before it, just before the outermost call of
+     * this method returns. Hence a cascade of events is handled in a single loop in the order the events are raised.
+     * 
+     * @param e
+     *            The event to raise
+     */
+    public static void raise(Event e) {
+        EventDispatcher.raise(e, () -> {});
+    }
+
+    /**
+     * Raises an event, then runs an `afterTask` and finally runs the tasks that have been scheduled via the `afterwards()`
+     * method. If this method is called while another event is handled in the same thread, the event is queued, see
+     * `raise(Event)`.
+     * 
+     * @param e
+     *            The event to raise
+     * @param afterTask
+     *            The task to run after the handling of that event
+     */
+    public static void raise(Event e, Runnable afterTask) {
+        EventDispatcher.raise(busOf(e.source()), e, afterTask);
+    }
+
+    /**
+     * Schedules a `Runnable` that is run synchronously after the handling of the currently handled event. This method must be
+     * called during the handling of an event (i.e. while an `EventListener` handles it) and must be called from the thread
+     * in which that event is raised (and handled). The `Runnable`s scheduled this way and the events raised during the
+     * handling are queued together and run in FIFO order (first in, first out).
+     * 
+     * @param rn
+     *            The runnable to schedule
+     */
+    public static void afterwards(Runnable rn) {
+        RaiseState state = RAISE_STATE.get();
+        if (!state.draining) {
+            throw new RaiseNotActive(); // must have an active raise to schedule via `afterwards()`
+        }
+
+        state.queue.add(rn);
+    }
+
+    // package private
+
+    /**
+     * @return The bus that delivers the events of a source and at which the listeners for that source are registered
+     */
+    static EventBus busOf(Object source) {
+        return source instanceof EventSource ? ((EventSource) source).eventBus() : GLOBAL;
+    }
+
+    /**
+     * Raises an event on a bus and on the global bus, then runs an `afterTask` and finally runs the tasks that have been
+     * scheduled via the `afterwards()` method and the events that have been raised in the meantime
+     */
+    static void raise(EventBus bus, Event e, Runnable afterTask) {
+        RaiseState state = RAISE_STATE.get();
+        if (state.draining) {
+            // a nested raise, which is handled by the loop of the outermost one
+            state.queue.add(() -> deliver(bus, e, afterTask));
+            return;
+        }
+
+        state.draining = true;
+        try {
+            deliver(bus, e, afterTask);
+            Runnable task;
+            while ((task = state.queue.poll()) != null) {
+                task.run();
+            }
+        } finally {
+            state.queue.clear(); // only not empty if a listener or task has thrown, then the rest is dropped
+            state.draining = false;
+        }
+    }
+
+    // private
+
+    private static void deliver(EventBus bus, Event e, Runnable afterTask) {
+        bus.deliver(e);
+        if (bus != GLOBAL) {
+            GLOBAL.deliver(e);
+        }
+        afterTask.run();
+    }
+
+    /**
+     * The raise that is active in a thread
+     */
+    private static final class RaiseState {
+        /** Whether the outermost raise is handling its event or the queue */
+        boolean draining = false;
+        /** The events raised and the tasks scheduled during the handling of an event */
+        final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    }
+
+    // Exceptions
+
+    /**
+     * Exception that was thrown if an event was raised during the handling of another event in the same thread. Such events
+     * are queued now, so it isn't thrown anymore.
+     */
+    @Deprecated
+    public static class RaiseAlreadyActive extends RuntimeException {
+        private static final long serialVersionUID = 7713141366627046771L;
+    }
+
+    /**
+     * Exception that is thrown if `EventDispatcher().afterwards()` is called while no event is handled in that thread.
+     */
+    public static class RaiseNotActive extends RuntimeException {
+        private static final long serialVersionUID = 2178481422042432110L;
+    }
+
+}
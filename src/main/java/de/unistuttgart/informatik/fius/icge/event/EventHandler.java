@@ -1,48 +1,104 @@
 package de.unistuttgart.informatik.fius.icge.event;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
-public class EventHandler {
-    private final ArrayList<Listening> _listenings = new ArrayList<>();
+/**
+ * An `EventHandler` groups the listeners of an owner, e.g. of a window. The handler should be closed when its owner doesn't
+ * need the events anymore. A handler that isn't closed is deregistered when it has been collected, which may take long.
+ */
+public class EventHandler implements AutoCloseable {
+    private static final Listening[] NO_LISTENINGS = new Listening[0];
+
+    /** The listenings of this handler, which are copied on write while holding the lock of this handler */
+    volatile Listening[] _listenings = NO_LISTENINGS;
+    /** Whether this handler is registered, only changed while holding the lock of this handler */
+    volatile boolean _registered = false;
 
     public EventHandler() {
         EventDispatcher.registerHandler(this);
     }
 
+    /**
+     * Deregisters this handler, such that its listeners don't receive any events anymore
+     */
     @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
+    public void close() {
         EventDispatcher.deregisterHandler(this);
     }
 
     public EventListener addListener(Class<? extends Event> listensFor, EventListener listener) {
-        _listenings.add(new Listening(listensFor, listener));
-        return listener;
+        return this.addListener(listensFor, null, listener);
     }
 
-    public boolean removeListener(EventListener listener) {
-        return _listenings.removeIf(entry -> entry.listener == listener);
+    /**
+     * Adds a listener for the events of a single source, e.g. of one `Simulation`. Events of other sources don't reach it at
+     * all, so this is cheaper than filtering them in the listener. If the source is an `EventSource`, the listener is
+     * registered at its `EventBus`.
+     * 
+     * @param listensFor
+     *            The type of the events to listen for
+     * @param source
+     *            The source of the events to listen for (see `Event.source()`) or `null` to listen for the events of all
+     *            sources
+     * @param listener
+     *            The listener to add
+     * @return The listener
+     */
+    public EventListener addListener(Class<? extends Event> listensFor, Object source, EventListener listener) {
+        Listening listening = new Listening(this, listensFor, source, listener);
+        boolean registered;
+        synchronized (this) {
+            Listening[] listenings = Arrays.copyOf(this._listenings, this._listenings.length + 1);
+            listenings[listenings.length - 1] = listening;
+            this._listenings = listenings;
+            registered = this._registered;
+        }
+        if (registered) {
+            listening.bus.add(listening);
+        }
+        return listener;
     }
 
-    void raise(Event e) {
-        for (Listening entry : new ArrayList<>(_listenings)) { // new list cause it might get modified concurrently
-            if (entry.listensFor.isAssignableFrom(e.getClass())) {
-                // we found an event listener that listens for this event
-                if (!entry.listener.handle(e)) {
-                    removeListener(entry.listener);
+    public boolean removeListener(EventListener listener) {
+        ArrayList<Listening> kept = new ArrayList<>();
+        ArrayList<Listening> removed = new ArrayList<>();
+        synchronized (this) {
+            for (Listening listening : this._listenings) {
+                if (listening.listener == listener) {
+                    listening.removed = true;
+                    removed.add(listening);
+                } else {
+                    kept.add(listening);
                 }
             }
+            if (removed.isEmpty()) return false;
+            this._listenings = kept.toArray(NO_LISTENINGS);
+        }
+        for (Listening listening : removed) {
+            listening.bus.remove(listening);
         }
+        return true;
     }
 
-    private static class Listening {
-        public Listening(Class<? extends Event> listensFor, EventListener listener) {
+    static final class Listening {
+        public Listening(EventHandler handler, Class<? extends Event> listensFor, Object source, EventListener listener) {
+            this.handler = handler;
             this.listensFor = listensFor;
+            this.source = source;
+            this.bus = EventDispatcher.busOf(source);
             this.listener = listener;
         }
 
+        public final EventHandler handler;
         public final Class<?> listensFor;
+        public final Object source;
+        public final EventBus bus;
         public final EventListener listener;
+        /** Whether the listener has been removed */
+        volatile boolean removed = false;
+        /** The entry in the bus or `null` if it isn't added, guarded by the registry lock of the bus */
+        EventBus.Slot slot = null;
     }
 
 }
@@ -0,0 +1,20 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+/**
+ * A source of `Event`s with its own `EventBus`, e.g. a `Simulation`. Events whose `Event.source()` is an `EventSource` are
+ * delivered on its bus and listeners for a single `EventSource` are registered at its bus.
+ */
+public interface EventSource {
+
+    /**
+     * @return The bus that delivers the events of this source
+     */
+    EventBus eventBus();
+}
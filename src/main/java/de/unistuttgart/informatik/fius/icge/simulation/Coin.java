@@ -29,6 +29,17 @@ public class Coin extends CollectableEntity {
         public boolean isSolid() {
             return false;
         }
+
+        @Override
+        public boolean equals(Object obj) {
+            // coin states don't have any data, so they are interchangeable
+            return (obj != null) && (obj.getClass() == this.getClass());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.getClass().hashCode();
+        }
     }
 
     /**
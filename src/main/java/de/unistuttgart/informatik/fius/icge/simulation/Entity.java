@@ -7,14 +7,12 @@
 
 package de.unistuttgart.informatik.fius.icge.simulation;
 
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
-import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
-import de.unistuttgart.informatik.fius.icge.event.EventHandler;
 import de.unistuttgart.informatik.fius.icge.event.EventListener;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
-import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionAttribute;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionMethod;
 import de.unistuttgart.informatik.fius.icge.territory.EntityState;
@@ -27,8 +25,11 @@ import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
 public abstract class Entity {
 
     private final Simulation _sim;
+    private final int _id;
     private int _delayTicks = 25;
     private int _blockedUntilTick = Integer.MIN_VALUE;
+    /** Serializes the actions of this entity. Unlike a monitor, it doesn't pin a virtual thread that waits for a tick. */
+    private final ReentrantLock _actionLock = new ReentrantLock();
 
     public static Predicate<Entity> predicateIsAt(int column, int row) {
         return ent -> WorldObject.predicateIsAt(column, row).test(ent.worldObject());
@@ -42,6 +43,7 @@ public abstract class Entity {
      */
     protected Entity(Simulation sim) {
         this._sim = sim;
+        this._id = sim.nextEntityId();
         this._delayTicks = this.getStandardDelayTicks();
     }
 
@@ -68,13 +70,21 @@ public abstract class Entity {
         return result;
     }
 
+    /**
+     * @return The id of this entity, which is unique within its simulation. Entities that are created earlier have smaller
+     *         ids.
+     */
+    public final int id() {
+        return this._id;
+    }
+
     /**
      * Get the alive state of this entity
      * 
      * @return true iff the entity is spawned in its simulation
      */
     public final boolean alive() {
-        return this.simulation().entities().contains(this);
+        return this.simulation().isAlive(this);
     }
 
     /**
@@ -282,7 +292,7 @@ public abstract class Entity {
         SimulationEvent ev = new MessageEvent(this.simulation(), this, message);
         this.delayed(() -> {
             if (!this.alive()) throw new EntityNotAlive();
-            EventDispatcher.raise(ev);
+            this.simulation().eventBus().raise(ev);
         });
     }
 
@@ -465,9 +475,7 @@ public abstract class Entity {
      */
     private void spawnInternal(int column, int row, Direction direction, boolean force)
             throws EntityAlreadyAlive, CellBlockedBySolidEntity {
-        for (Entity e : this.simulation().entitiesAt(column, row)) {
-            if (e.state().isSolid()) throw new CellBlockedBySolidEntity();
-        }
+        if (this.simulation().territory().isSolidAt(column, row)) throw new CellBlockedBySolidEntity();
 
         WorldObject wob = new WorldObject(this.state(), column, row, this.getZ(), direction);
         SimulationEvent ev = new SpawnEvent(this.simulation(), this, wob);
@@ -502,8 +510,13 @@ public abstract class Entity {
      * @param fn
      *            The runnable
      */
-    protected synchronized void delayed(Runnable fn) {
-        this.delayed(fn, this._delayTicks);
+    protected void delayed(Runnable fn) {
+        this._actionLock.lock();
+        try {
+            this.delayed(fn, this._delayTicks);
+        } finally {
+            this._actionLock.unlock();
+        }
     }
 
     /**
@@ -518,27 +531,66 @@ public abstract class Entity {
      *            Delay in Ticks after which the entity is considered busy after executing the runnable.
      *            Use 0 or negative numbers to instantly run fn regardless of busy state.
      */
-    protected synchronized void delayed(Runnable fn, int delay) {
-        if (delay > 0) {
-            int thisMoveTick = this._blockedUntilTick;
-            if (this.simulation().tickCount() < thisMoveTick) {
-                Semaphore sem = new Semaphore(0);
-                // we have this `handler` variable such that the handler doesn't get garbage collected
-                EventHandler handler = new EventHandler();
-                handler.addListener(TickEvent.class, ev -> {
-                    TickEvent te = (TickEvent) ev;
-                    if ((te.simulation == this.simulation()) && (te.tickCount >= thisMoveTick)) {
-                        sem.release();
-                        return false;
-                    }
-                    return true;
-                });
-                sem.acquireUninterruptibly(); // after this line, the `handler` may safely be garbage collected
-            }
+    protected void delayed(Runnable fn, int delay) {
+        this._actionLock.lock();
+        try {
+            int thisMoveTick = delay > 0 ? this._blockedUntilTick : Integer.MIN_VALUE;
+            this.simulation().runAt(thisMoveTick, () -> {
+                this._blockedUntilTick = this.simulation().tickCount() + delay;
+                fn.run();
+            });
+        } finally {
+            this._actionLock.unlock();
         }
-        synchronized (this.simulation()) {
-            this._blockedUntilTick = this.simulation().tickCount() + delay;
-            fn.run();
+    }
+
+    /**
+     * Captures the state of this entity that isn't part of its `WorldObject`, see `Simulation.snapshot()`. Subclasses with
+     * additional state override this method and `restore` with a subclass of `Memento`.
+     * 
+     * @return The memento
+     */
+    protected Memento memento() {
+        return new Memento(this);
+    }
+
+    /**
+     * Restores the state of this entity from a memento
+     * 
+     * @param memento
+     *            A memento that has been created by `memento()` of this entity or, for a fork, of the entity this entity is a
+     *            copy of
+     * @param entities
+     *            Maps the entities that the memento refers to (e.g. in an inventory) to the corresponding entities of the
+     *            simulation of this entity
+     */
+    protected void restore(Memento memento, Function<Entity, Entity> entities) {
+        this._actionLock.lock();
+        try {
+            this._delayTicks = memento.delayTicks;
+            this._blockedUntilTick = memento.blockedUntilTick;
+        } finally {
+            this._actionLock.unlock();
+        }
+    }
+
+    /**
+     * The state of an entity that isn't part of its `WorldObject`. A memento is immutable, so it can be restored several
+     * times.
+     */
+    protected static class Memento {
+        final int delayTicks;
+        final int blockedUntilTick;
+
+        /**
+         * Captures the state of an entity
+         * 
+         * @param ent
+         *            The entity
+         */
+        protected Memento(Entity ent) {
+            this.delayTicks = ent._delayTicks;
+            this.blockedUntilTick = ent._blockedUntilTick;
         }
     }
 
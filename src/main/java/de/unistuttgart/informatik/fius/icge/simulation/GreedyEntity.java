@@ -8,6 +8,7 @@
 package de.unistuttgart.informatik.fius.icge.simulation;
 
 import java.util.ArrayList;
+import java.util.function.Function;
 
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionAttribute;
 import de.unistuttgart.informatik.fius.icge.territory.EntityState;
@@ -105,6 +106,20 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
      */
     protected abstract boolean canDropType(Class<? extends Entity> cls);
 
+    /**
+     * Gets the entities of a type in the cell of this greedy entity, which only looks at that cell
+     * 
+     * @param cls
+     *            The type of the entities
+     * @return The entities of the specified type in the same cell as this greedy entity
+     * @throws EntityNotAlive
+     *             When this entity is not alive
+     */
+    private ArrayList<? extends Entity> entitiesHere(Class<? extends Entity> cls) throws EntityNotAlive {
+        WorldObject wob = this.worldObject();
+        return this.simulation().entitiesOfTypeAt(cls, wob.column, wob.row);
+    }
+
     /**
      * Internal entity collection logic of greedy entity
      * 
@@ -123,10 +138,8 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
 
     @Override
     public boolean canCollect(Class<? extends Entity> cls) throws EntityNotAlive {
-        synchronized (this.simulation()) {
-            for (Entity ent : this.simulation().entities()) {
-                if ((ent.getClass() == cls) && canCollectEntity(ent)) return true;
-            }
+        for (Entity ent : this.entitiesHere(cls)) {
+            if ((ent.getClass() == cls) && canCollectEntity(ent)) return true;
         }
         return false;
     }
@@ -140,10 +153,8 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
      */
     @Override
     public boolean canCollect() throws EntityNotAlive {
-        synchronized (this.simulation()) {
-            for (Entity ent : this.simulation().entities()) {
-                if (canCollectEntity(ent)) return true;
-            }
+        for (Entity ent : this.entitiesHere(CollectableEntity.class)) {
+            if (canCollectEntity(ent)) return true;
         }
         return false;
     }
@@ -151,7 +162,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     @Override
     public void collect(Class<? extends Entity> cls) throws CanNotCollectException, EntityNotAlive {
         this.delayed(() -> {
-            for (Entity ent : this.simulation().entities()) {
+            for (Entity ent : this.entitiesHere(cls)) {
                 if ((ent.getClass() == cls) && canCollectEntity(ent)) {
                     this.collectEntity((CollectableEntity) ent);
                     return;
@@ -164,7 +175,7 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     @Override
     public void collect() throws CanNotCollectException, EntityNotAlive {
         this.delayed(() -> {
-            for (Entity ent : this.simulation().entities()) {
+            for (Entity ent : this.entitiesHere(CollectableEntity.class)) {
                 if (canCollectEntity(ent)) {
                     this.collectEntity((CollectableEntity) ent);
                     return;
@@ -199,6 +210,20 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
         });
     }
 
+    @Override
+    protected Memento memento() {
+        return new GreedyMemento(this);
+    }
+
+    @Override
+    protected void restore(Memento memento, Function<Entity, Entity> entities) {
+        super.restore(memento, entities);
+        this._inventory.clear();
+        for (Entity ent : ((GreedyMemento) memento).inventory) {
+            this._inventory.add(entities.apply(ent));
+        }
+    }
+
     /**
      * Informs the instance that a CollectableEntity has been collected. This method exists to be overriden.
      * 
@@ -222,4 +247,22 @@ public abstract class GreedyEntity extends MovableEntity implements EntityCollec
     void dropped(Entity ent) {
         // default implementation: do nothing
     }
+
+    /**
+     * The state of a greedy entity that isn't part of its `WorldObject`
+     */
+    protected static class GreedyMemento extends MovableMemento {
+        final ArrayList<Entity> inventory;
+
+        /**
+         * Captures the state of a greedy entity
+         * 
+         * @param ent
+         *            The greedy entity
+         */
+        protected GreedyMemento(GreedyEntity ent) {
+            super(ent);
+            this.inventory = new ArrayList<>(ent._inventory);
+        }
+    }
 }
@@ -7,13 +7,15 @@
 
 package de.unistuttgart.informatik.fius.icge.simulation;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
 import de.unistuttgart.informatik.fius.icge.event.EventHandler;
 import de.unistuttgart.informatik.fius.icge.event.EventListener;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickCommitEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionMethod;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
@@ -23,7 +25,8 @@ import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
  */
 public abstract class MovableEntity extends Entity {
 
-    private final Deque<MoveEvent> _positionStack = new ArrayDeque<>(100);
+    /** The recorded positions, which are shared with the `Memento`s */
+    private volatile Positions _positions = Positions.EMPTY;
     private final EventHandler _eventHandler = new EventHandler();
 
     /**
@@ -35,17 +38,17 @@ public abstract class MovableEntity extends Entity {
     protected MovableEntity(Simulation sim) {
         super(sim);
 
-        this._eventHandler.addListener(SpawnEvent.class, ev -> {
-            SpawnEvent se = (SpawnEvent) ev;
-            if ((se.simulation == this.simulation()) && (se.entity == this)) {
-                this._positionStack.add(new MoveEvent(this.simulation(), this, se.row, se.column));
-            }
+        this._eventHandler.addListener(SpawnEvent.class, sim, ev -> {
+            this.recordPosition((SpawnEvent) ev);
             return true;
         });
-        this._eventHandler.addListener(MoveEvent.class, ev -> {
-            MoveEvent me = (MoveEvent) ev;
-            if ((me.simulation == this.simulation()) && (me.entity == this)) {
-                this._positionStack.add(me);
+        this._eventHandler.addListener(MoveEvent.class, sim, ev -> {
+            this.recordPosition((MoveEvent) ev);
+            return true;
+        });
+        this._eventHandler.addListener(TickCommitEvent.class, sim, ev -> {
+            for (SimulationEvent se : ((TickCommitEvent) ev).events) {
+                this.recordPosition(se);
             }
             return true;
         });
@@ -72,6 +75,20 @@ public abstract class MovableEntity extends Entity {
         });
     }
 
+    /**
+     * Proposes to move this entity one field in the current direction, without doing it. See `ParallelStepper`.
+     * 
+     * @return The proposal
+     * @throws IllegalMove
+     *             the field is occupied by a solid entity
+     * @throws EntityNotAlive
+     *             the entity is not spawned or already despawned
+     */
+    public Proposal proposeMove() throws IllegalMove, EntityNotAlive {
+        WorldObject wobAfter = this.wobAfterMove();
+        return new Proposal(wobAfter, new MoveEvent(this.simulation(), this, wobAfter));
+    }
+
     /**
      * Check if the entity can move one field in the current direction
      * 
@@ -116,6 +133,17 @@ public abstract class MovableEntity extends Entity {
         });
     }
 
+    /**
+     * Proposes to turn this entity 90° counterclockwise, without doing it. See `ParallelStepper`.
+     * 
+     * @return The proposal
+     * @throws EntityNotAlive
+     *             the entity is not spawned or already despawned
+     */
+    public Proposal proposeTurnLeft() throws EntityNotAlive {
+        return new Proposal(this.wobAfterTurnLeft(), new TurnLeftEvent(this.simulation(), this));
+    }
+
     /**
      * Get the first position of this entity as a MoveEvent
      * 
@@ -124,7 +152,8 @@ public abstract class MovableEntity extends Entity {
      * @return The move event for the position
      */
     public MoveEvent firstPosition() {
-        return this._positionStack.peekFirst();
+        Positions positions = this._positions;
+        return positions.size == 0 ? null : positions.events[0];
     }
 
     /**
@@ -133,22 +162,52 @@ public abstract class MovableEntity extends Entity {
      * @return The move event for the position
      */
     public MoveEvent lastPosition() {
-        return this._positionStack.peekLast();
+        Positions positions = this._positions;
+        return positions.size == 0 ? null : positions.events[positions.size - 1];
     }
 
     /**
      * Get the whole position history of this entity as an Iterable for use in a for loop
      * 
-     * The iterable starts with this.firstPosition() and ends with this.lastPosition
+     * The iterable starts with this.firstPosition() and ends with this.lastPosition. Every iteration sees the positions
+     * that have been recorded when it starts, without copying them.
      * 
      * @return A iterable of move events
      */
     public Iterable<MoveEvent> positionHistory() {
-        return () -> this._positionStack.iterator();
+        return () -> {
+            Positions positions = this._positions;
+            return Arrays.asList(positions.events).subList(0, positions.size).iterator();
+        };
+    }
+
+    @Override
+    protected Memento memento() {
+        return new MovableMemento(this);
+    }
+
+    @Override
+    protected void restore(Memento memento, Function<Entity, Entity> entities) {
+        super.restore(memento, entities);
+        this._positions = ((MovableMemento) memento).positions.boundTo(this);
     }
 
     // private
 
+    private void recordPosition(SimulationEvent ev) {
+        if (ev instanceof SpawnEvent) {
+            SpawnEvent se = (SpawnEvent) ev;
+            if ((se.simulation == this.simulation()) && (se.entity == this)) {
+                this._positions = this._positions.append(new MoveEvent(this.simulation(), this, se.row, se.column));
+            }
+        } else if (ev instanceof MoveEvent) {
+            MoveEvent me = (MoveEvent) ev;
+            if ((me.simulation == this.simulation()) && (me.entity == this)) {
+                this._positions = this._positions.append(me);
+            }
+        }
+    }
+
     /**
      * Create a new world object with the calculated coordinates of one field in
      * front of this entity
@@ -177,11 +236,7 @@ public abstract class MovableEntity extends Entity {
                 --column;
             break;
         }
-        int newCol = column;
-        int newRow = row;
-        if (this.simulation().territory().containsWith(
-                wall -> (wall.column == newCol) && (wall.row == newRow) && wall.state.isSolid()))
-            throw new IllegalMove();
+        if (this.simulation().territory().isSolidAt(column, row)) throw new IllegalMove();
         return new WorldObject(wob.state, column, row, 100, wob.direction);
     }
 
@@ -214,6 +269,67 @@ public abstract class MovableEntity extends Entity {
         return new WorldObject(wob.state, wob.column, wob.row, 100, dir);
     }
 
+    /**
+     * The recorded positions, oldest first. A `Memento` shares the array with the entity: Appending writes to the next slot
+     * if no other version has claimed it yet and copies the array otherwise, e.g. after restoring an older version.
+     */
+    private static final class Positions {
+        static final Positions EMPTY = new Positions(new MoveEvent[0], new AtomicInteger(), 0);
+
+        /** The positions of this version and, from `size` on, of other versions that share the array */
+        final MoveEvent[] events;
+        /** The number of slots of `events` that have been claimed by any version */
+        final AtomicInteger claimed;
+        final int size;
+
+        Positions(MoveEvent[] events, AtomicInteger claimed, int size) {
+            this.events = events;
+            this.claimed = claimed;
+            this.size = size;
+        }
+
+        Positions append(MoveEvent position) {
+            if ((this.size < this.events.length) && this.claimed.compareAndSet(this.size, this.size + 1)) {
+                this.events[this.size] = position; // published with the returned version
+                return new Positions(this.events, this.claimed, this.size + 1);
+            }
+            MoveEvent[] events = Arrays.copyOf(this.events, Math.max(16, this.size * 2));
+            events[this.size] = position;
+            return new Positions(events, new AtomicInteger(this.size + 1), this.size + 1);
+        }
+
+        /**
+         * @return These positions with events of a movable entity, which are recreated if they belong to another entity,
+         *         e.g. when a fork of a `Simulation` is restored from a snapshot of the original
+         */
+        Positions boundTo(MovableEntity ent) {
+            if ((this.size == 0) || (this.events[0].entity == ent)) return this;
+            MoveEvent[] events = new MoveEvent[Math.max(16, this.size)];
+            for (int i = 0; i < this.size; ++i) {
+                events[i] = new MoveEvent(ent.simulation(), ent, this.events[i].column, this.events[i].row);
+            }
+            return new Positions(events, new AtomicInteger(this.size), this.size);
+        }
+    }
+
+    /**
+     * The state of a movable entity that isn't part of its `WorldObject`
+     */
+    protected static class MovableMemento extends Memento {
+        final Positions positions;
+
+        /**
+         * Captures the state of a movable entity
+         * 
+         * @param ent
+         *            The movable entity
+         */
+        protected MovableMemento(MovableEntity ent) {
+            super(ent);
+            this.positions = ent._positions;
+        }
+    }
+
     // Exceptions:
 
     /**
@@ -0,0 +1,197 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * Steps many `Entity`s tick-synchronously, e.g. a swarm of `Mario`s exploring a maze.
+ * 
+ * On every tick, each added `Entity` proposes its next state. The proposals are computed in parallel on a `ForkJoinPool`, all
+ * against the state of the previous tick, before the `Simulation` takes its lock for the tick. Hence the step functions may
+ * query the `Simulation`, but they mustn't change it themselves. Then the proposals are checked in the order of the ids of
+ * the `Entity`s and committed in one `Simulation.batch`, so the result doesn't depend on the number of threads:
+ * 
+ * - A proposal of an `Entity` whose `WorldObject` has been changed since it was computed is rejected.
+ * - A proposal to enter a cell that is solid is rejected.
+ * - A proposal to enter a cell that an `Entity` with a smaller id enters in the same tick is rejected.
+ * 
+ * An `Entity` whose proposal is rejected stays as it is. The stepped `Entity`s shouldn't run programs at the same time.
+ */
+public class ParallelStepper {
+
+    private final Simulation _sim;
+    private final ForkJoinPool _pool;
+    /** The stepped `Entity`s by their id, which is the order in which proposals are checked */
+    private final ConcurrentSkipListMap<Integer, Stepped<?>> _stepped = new ConcurrentSkipListMap<>();
+
+    /**
+     * Creates a new stepper that computes the proposals on the common `ForkJoinPool`
+     * 
+     * @param sim
+     *            The simulation whose `Entity`s are stepped
+     */
+    public ParallelStepper(Simulation sim) {
+        this(sim, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new stepper
+     * 
+     * @param sim
+     *            The simulation whose `Entity`s are stepped
+     * @param pool
+     *            The pool to compute the proposals on
+     */
+    public ParallelStepper(Simulation sim, ForkJoinPool pool) {
+        if ((sim == null) || (pool == null)) throw new IllegalArgumentException();
+        this._sim = sim;
+        this._pool = pool;
+    }
+
+    /**
+     * Adds an `Entity` to step
+     * 
+     * @param <E>
+     *            The type of the `Entity`
+     * @param ent
+     *            The `Entity`, which has to belong to the simulation of this stepper
+     * @param step
+     *            The function that computes the proposal of the `Entity` for the next tick or `null` if it stays as it is.
+     *            If it throws an exception, the `Entity` stays as it is as well.
+     */
+    public <E extends Entity> void add(E ent, Function<? super E, Proposal> step) {
+        if (ent.simulation() != this._sim) throw new IllegalArgumentException("The entity belongs to another simulation");
+        this._stepped.put(ent.id(), new Stepped<>(ent, step));
+    }
+
+    /**
+     * Removes a stepped `Entity`
+     * 
+     * @param ent
+     *            The `Entity` to remove
+     * @return true iff the `Entity` was stepped
+     */
+    public boolean remove(Entity ent) {
+        return this._stepped.remove(ent.id()) != null;
+    }
+
+    /**
+     * Starts stepping the `Entity`s on every tick of the simulation
+     */
+    public void start() {
+        this._sim.addStepper(this);
+    }
+
+    /**
+     * Stops stepping the `Entity`s
+     */
+    public void stop() {
+        this._sim.removeStepper(this);
+    }
+
+    /**
+     * Advances the clock of the simulation by a number of ticks as fast as possible, which is meant for simulations that
+     * nobody watches. If this stepper has been started, the `Entity`s are stepped on each of these ticks. The simulation
+     * should be paused meanwhile, such that no timer advances the clock as well.
+     * 
+     * @param ticks
+     *            The number of ticks
+     */
+    public void run(int ticks) {
+        for (int i = 0; i < ticks; ++i) {
+            this._sim.advanceTick();
+        }
+    }
+
+    // package private
+
+    /**
+     * Computes the proposals of all `Entity`s for the next tick. This is called by the simulation before it takes its lock
+     * for the tick.
+     * 
+     * @return The task that commits the proposals, which the simulation runs while holding its lock
+     */
+    Runnable propose() {
+        ArrayList<Stepped<?>> stepped = new ArrayList<>(this._stepped.values());
+        if (stepped.isEmpty()) return () -> {};
+        if (Thread.holdsLock(this._sim)) throw new IllegalStateException("The step functions may need the simulation");
+        List<Proposed> proposals = this._pool
+                .submit(() -> stepped.parallelStream().map(Stepped::propose).collect(Collectors.toList())).join();
+        return () -> this.step(stepped, proposals);
+    }
+
+    // private
+
+    /**
+     * Commits the proposals of the stepped `Entity`s. Has to be called while holding the lock of the simulation.
+     */
+    private void step(ArrayList<Stepped<?>> stepped, List<Proposed> proposals) {
+        Territory tty = this._sim.territory();
+        HashSet<Long> entered = new HashSet<>();
+        this._sim.batch(tx -> {
+            for (int i = 0; i < stepped.size(); ++i) {
+                Proposal proposal = proposals.get(i).proposal;
+                Entity ent = stepped.get(i).entity;
+                WorldObject wob = this._sim.worldObject(ent);
+                if ((proposal == null) || (wob == null) || (proposal.worldObject == wob)) continue;
+                if (wob != proposals.get(i).base) continue; // changed since the proposal was computed
+                WorldObject next = proposal.worldObject;
+                if ((next != null) && ((next.column != wob.column) || (next.row != wob.row))) {
+                    if (tty.isSolidAt(next.column, next.row)) continue;
+                    if (!entered.add(((long) next.column << 32) | (next.row & 0xFFFFFFFFL))) continue;
+                }
+                tx.setWorldObject(ent, next, proposal.event);
+            }
+        });
+    }
+
+    /**
+     * A proposal with the `WorldObject` of the `Entity` that it was computed from
+     */
+    private static final class Proposed {
+        final WorldObject base;
+        final Proposal proposal;
+
+        Proposed(WorldObject base, Proposal proposal) {
+            this.base = base;
+            this.proposal = proposal;
+        }
+    }
+
+    /**
+     * A stepped `Entity` with its step function
+     */
+    private static final class Stepped<E extends Entity> {
+        final E entity;
+        final Function<? super E, Proposal> step;
+
+        Stepped(E entity, Function<? super E, Proposal> step) {
+            this.entity = entity;
+            this.step = step;
+        }
+
+        Proposed propose() {
+            WorldObject base = this.entity.simulation().worldObject(this.entity);
+            try {
+                return new Proposed(base, this.step.apply(this.entity));
+            } catch (RuntimeException e) {
+                return new Proposed(base, null); // e.g. an `IllegalMove` or `EntityNotAlive`
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs programs that control `Entity`s, e.g. the solution of a task or the control loop of an autonomous `Entity`.
+ *
+ * A program spends most of its time blocked until the clock of its `Simulation` reaches the tick at which its `Entity` is
+ * free again. Therefore every program runs on a virtual thread if the JVM supports them (Java 21 and later), such that thousands
+ * of blocked programs only cost a few kilobytes each. On older JVMs, platform threads with a small stack are used.
+ *
+ * Like any non-daemon thread, a running program keeps the JVM alive, so e.g. a `main` method may return right after starting
+ * a task. Virtual threads are always daemon threads, hence while programs run on them, a single non-daemon platform thread of
+ * the runner waits for them to finish.
+ */
+public class ProgramRunner {
+
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024;
+
+    /** `Thread.ofVirtual()`, `Thread.Builder.name(String)` and `Thread.Builder.unstarted(Runnable)` or `null` */
+    private static final Method[] VIRTUAL_THREAD_METHODS = findVirtualThreadMethods();
+
+    private final String _name;
+    private final AtomicInteger _threadCount = new AtomicInteger();
+    private final Set<Thread> _running = ConcurrentHashMap.newKeySet();
+    /** The thread that keeps the JVM alive while programs run on virtual threads or `null`, guarded by `_running` */
+    private Thread _keepAlive = null;
+
+    /**
+     * Creates a new program runner
+     *
+     * @param name
+     *            The name of the runner, which is used as prefix of the thread names
+     */
+    public ProgramRunner(String name) {
+        this._name = name;
+    }
+
+    /**
+     * @return true iff the programs run on virtual threads
+     */
+    public static boolean usesVirtualThreads() {
+        return VIRTUAL_THREAD_METHODS != null;
+    }
+
+    /**
+     * Starts a program on a new thread
+     *
+     * @param program
+     *            The program to run
+     * @return The thread that runs the program
+     */
+    public Thread start(Runnable program) {
+        Runnable tracked = () -> {
+            try {
+                program.run();
+            } finally {
+                synchronized (this._running) {
+                    this._running.remove(Thread.currentThread());
+                    this._running.notifyAll();
+                }
+            }
+        };
+        Thread thread = createThread(this._name + " " + this._threadCount.incrementAndGet(), tracked);
+        synchronized (this._running) {
+            this._running.add(thread);
+            if (thread.isDaemon() && (this._keepAlive == null)) {
+                this._keepAlive = new Thread(null, this::keepAlive, this._name + " keep-alive", PLATFORM_STACK_SIZE);
+                this._keepAlive.setDaemon(false);
+                this._keepAlive.start();
+            }
+        }
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @return The number of programs of this runner that haven't finished yet
+     */
+    public int runningCount() {
+        return this._running.size();
+    }
+
+    /**
+     * Waits until all programs of this runner that have been started so far have finished
+     *
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public void awaitAll() throws InterruptedException {
+        for (Thread thread : this._running) {
+            thread.join();
+        }
+    }
+
+    // private
+
+    /**
+     * Waits until no program of this runner is running anymore, such that the JVM doesn't exit before
+     */
+    private void keepAlive() {
+        synchronized (this._running) {
+            while (!this._running.isEmpty()) {
+                try {
+                    this._running.wait();
+                } catch (InterruptedException e) {
+                    // keep waiting, since the programs still run
+                }
+            }
+            this._keepAlive = null;
+        }
+    }
+
+    private static Thread createThread(String name, Runnable runnable) {
+        if (VIRTUAL_THREAD_METHODS != null) {
+            try {
+                Object builder = VIRTUAL_THREAD_METHODS[0].invoke(null);
+                builder = VIRTUAL_THREAD_METHODS[1].invoke(builder, name);
+                return (Thread) VIRTUAL_THREAD_METHODS[2].invoke(builder, runnable);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e); // the methods have been looked up successfully, so this can't happen
+            }
+        }
+        Thread thread = new Thread(null, runnable, name, PLATFORM_STACK_SIZE);
+        thread.setDaemon(false); // even if it is started by a daemon thread
+        return thread;
+    }
+
+    private static Method[] findVirtualThreadMethods() {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Method[] methods = new Method[] { Thread.class.getMethod("ofVirtual"), builder.getMethod("name", String.class),
+                    builder.getMethod("unstarted", Runnable.class) };
+            // on Java 19 and 20, the methods exist but throw `UnsupportedOperationException` unless preview features are enabled
+            methods[2].invoke(methods[1].invoke(methods[0].invoke(null), "probe"), (Runnable) () -> {});
+            return methods;
+        } catch (ReflectiveOperationException e) {
+            return null; // the JVM doesn't support virtual threads
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * The next state that an `Entity` proposes for itself when it is stepped by a `ParallelStepper`
+ */
+public final class Proposal {
+    /** The proposed `WorldObject` of the `Entity` or `null` if it proposes to die */
+    public final WorldObject worldObject;
+    /** The event that is part of the `TickCommitEvent` if the proposal is accepted or `null` */
+    public final SimulationEvent event;
+
+    /**
+     * Creates a new proposal
+     * 
+     * @param worldObject
+     *            The proposed `WorldObject` of the `Entity` or `null` if it proposes to die
+     * @param event
+     *            The event that is part of the `TickCommitEvent` if the proposal is accepted or `null`
+     */
+    public Proposal(WorldObject worldObject, SimulationEvent event) {
+        this.worldObject = worldObject;
+        this.event = event;
+    }
+}
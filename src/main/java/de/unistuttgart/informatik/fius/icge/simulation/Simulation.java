@@ -8,29 +8,91 @@
 package de.unistuttgart.informatik.fius.icge.simulation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.Semaphore;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import de.unistuttgart.informatik.fius.icge.event.Event;
-import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.event.EventBus;
+import de.unistuttgart.informatik.fius.icge.event.EventSource;
 import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 
 /**
  * Simulation managing Entities and Territory.
+ * 
+ * All changes are made while holding the lock of the `Simulation`, so there is a single writer at a time. The queries don't
+ * take the lock: they read the current `Territory`, which is immutable, and concurrent maps from and to the `Entity`s. Hence
+ * rendering and inspecting never wait for a tick, but a query that runs concurrently to a change may see the state before or
+ * after it.
+ *
+ * While changes are pending, i.e. during a `batch` or a tick in per-tick commit mode, all queries already return the pending
+ * state, such that an `Entity` sees its own changes and those made before it in the same tick. Only the events are held back
+ * until the changes are committed.
+ *
+ * Every `Simulation` delivers its events on its own `EventBus`, so independent `Simulation`s don't contend for event delivery.
  */
-public class Simulation {
-
-    private final HashMap<Entity, WorldObject> _entityObjects = new HashMap<>();
-    private Territory _tty;
-    private boolean _running = false;
-    private int _tickCount = 0;
-    private TimerTask _timerTask;
-    private Semaphore _timerTaskSem;
+public class Simulation implements EventSource {
+
+    private static final long BUSY_POLL_NANOS = 50_000;
+
+    private final ConcurrentHashMap<Entity, WorldObject> _entityObjects = new ConcurrentHashMap<>();
+    /**
+     * The inverse of `_entityObjects`, keyed by identity. Outdated `WorldObject`s are only removed after the new `Territory` is
+     * published, such that every `WorldObject` of the published `Territory` can be looked up.
+     */
+    private final ConcurrentHashMap<IdentityKey, Entity> _objectEntities = new ConcurrentHashMap<>();
+    /** The alive `Entity`s by their concrete class */
+    private final ConcurrentHashMap<Class<?>, Set<Entity>> _entitiesByClass = new ConcurrentHashMap<>();
+    /** Incremented whenever a class is added to `_entitiesByClass` */
+    private volatile int _classesVersion = 0;
+    /** The concrete classes in `_entitiesByClass` that are subtypes of a type, computed on demand */
+    private final ConcurrentHashMap<Class<?>, SupertypeEntry> _entitiesBySupertype = new ConcurrentHashMap<>();
+    private volatile Territory _tty = new Territory();
+    private volatile boolean _running = false;
+    private volatile boolean _fastForward = false;
+    private boolean _commitPerTick = false;
+    /** The innermost batch whose changes haven't been committed yet or `null`; see `batch` and `setCommitPerTick` */
+    private volatile Batch _pending = null;
+    /** The number of nested calls of `batch` */
+    private int _batchDepth = 0;
+    /** Whether a thread that was woken by a tick is running its action */
+    private boolean _inTickAction = false;
+    /** The threads in `runAt` ordered by the tick they wait for */
+    private final PriorityQueue<Waiter> _waiters = new PriorityQueue<>();
+    /** The number of threads that have been woken by a tick but haven't run their action yet */
+    private int _wokenWaiters = 0;
+    /** The threads that have run an action after waiting and haven't called `runAt` again since */
+    private final HashSet<Thread> _busyThreads = new HashSet<>();
+    private volatile int _tickCount = 0;
+    private TickScheduler.Registration _ticker;
     private int _tickMillis = 10;
+    /** The value of `System.nanoTime()` when the threads woken by the last tick had run their actions, see `othersBusy` */
+    private long _actionsDoneNanos = System.nanoTime();
+    private final AtomicInteger _entityCount = new AtomicInteger();
+    /** The steppers that step their `Entity`s on every tick */
+    private final CopyOnWriteArrayList<ParallelStepper> _steppers = new CopyOnWriteArrayList<>();
+    /** The histories that record the changes to the territory */
+    private final CopyOnWriteArrayList<SimulationHistory> _histories = new CopyOnWriteArrayList<>();
+    private final EventBus _eventBus = new EventBus();
 
     /**
      * Creates a new `Simumlation` from a `Territory`
@@ -57,14 +119,39 @@ public class Simulation {
         synchronized (sim) {
             this.init(sim._tty);
             this._running = sim._running;
+            this._fastForward = sim._fastForward;
             this._tickCount = sim._tickCount;
             this._tickMillis = sim._tickMillis;
-            if (this._running) {
+            if (this._running && !this._fastForward) {
                 this.startTimer();
             }
         }
     }
 
+    /**
+     * Creates a fork from a snapshot, see `fork()`
+     */
+    private Simulation(Simulation sim, Snapshot snapshot) {
+        IdentityHashMap<Entity, Entity> copies = new IdentityHashMap<>();
+        for (int i = 0; i < snapshot.entities.length; ++i) {
+            copies.put(snapshot.entities[i], snapshot.worldObjects[i].state.createEntity(this));
+        }
+        // other entities that are referenced by a memento, e.g. in an inventory, are copied on demand
+        Function<Entity, Entity> copyOf = ent -> copies.computeIfAbsent(ent, e -> e.state().createEntity(this));
+        for (int i = 0; i < snapshot.entities.length; ++i) {
+            this.link(copies.get(snapshot.entities[i]), snapshot.worldObjects[i]);
+        }
+        this._tty = snapshot.territory;
+        for (int i = 0; i < snapshot.entities.length; ++i) {
+            copies.get(snapshot.entities[i]).restore(snapshot.mementos[i], copyOf);
+        }
+        this._tickCount = snapshot.tickCount;
+        this._tickMillis = sim._tickMillis;
+        this._fastForward = sim._fastForward;
+        this._commitPerTick = sim._commitPerTick;
+        this._eventBus.raise(new InitEvent(this));
+    }
+
     /**
      * Pauses this `Simulation` if it is running
      *
@@ -76,7 +163,7 @@ public class Simulation {
         } finally {
             this.stopTimer();
             this._running = false;
-            EventDispatcher.raise(new PauseEvent(this));
+            this._eventBus.raise(new PauseEvent(this));
         }
     }
 
@@ -90,8 +177,12 @@ public class Simulation {
             return !this._running;
         } finally {
             this._running = true;
-            EventDispatcher.raise(new ResumeEvent(this));
-            this.startTimer();
+            this._eventBus.raise(new ResumeEvent(this));
+            if (this._fastForward) {
+                this.wakeEarliestWaiter(); // let it advance the clock
+            } else {
+                this.startTimer();
+            }
         }
 
     }
@@ -103,31 +194,140 @@ public class Simulation {
         return this._running;
     }
 
+    /**
+     * Enables or disables the fast-forward mode, which is meant for running tasks without anybody watching.
+     * 
+     * In fast-forward mode, the ticks aren't driven by a timer. Instead, while this `Simulation` is running, a thread that waits
+     * for an `Entity` to become free advances the clock itself, as long as no other thread waits for an earlier tick. Hence the
+     * same ticks and events happen as with a timer, just as fast as the CPU allows.
+     * 
+     * NOTE: After a thread has run an action, the clock is held back until the thread waits for its next action, but at most
+     * for the number of milliseconds per tick after the actions of the last tick have been run, like a timer would. Hence
+     * threads that act concurrently interleave like with a timer as long as none of them computes longer than a tick between
+     * two actions.
+     * A thread that polls without acting, e.g. `while (!mario.canMove()) {}`, sees the clock advance at the speed of a timer.
+     * 
+     * @param fastForward
+     *            Whether to enable the fast-forward mode
+     */
+    public synchronized void setFastForward(boolean fastForward) {
+        if (fastForward == this._fastForward) return;
+        if (this._running && fastForward) {
+            this.stopTimer();
+        }
+        this._fastForward = fastForward;
+        if (this._running && !fastForward) {
+            this.startTimer();
+        }
+        if (fastForward && this._running) {
+            this.wakeEarliestWaiter();
+        }
+    }
+
+    /**
+     * @return true iff this `Simulation` is in fast-forward mode
+     */
+    public boolean fastForward() {
+        return this._fastForward;
+    }
+
+    /**
+     * Enables or disables the per-tick commit mode.
+     * 
+     * In per-tick commit mode, the changes that the actions of a tick make to `WorldObject`s are collected like in a `batch`.
+     * When the last thread that was woken by the tick has run its action, they are committed at once and a single
+     * `TickCommitEvent` is raised instead of an event per change. The queries already return the new state before, see the
+     * class comment.
+     * 
+     * @param commitPerTick
+     *            Whether to enable the per-tick commit mode
+     */
+    public synchronized void setCommitPerTick(boolean commitPerTick) {
+        this._commitPerTick = commitPerTick;
+        if (!commitPerTick) {
+            this.commitPending();
+        }
+    }
+
+    /**
+     * @return true iff this `Simulation` is in per-tick commit mode
+     */
+    public boolean commitPerTick() {
+        return this._commitPerTick;
+    }
+
+    /**
+     * Makes several changes to `WorldObject`s at once. All calls of `setWorldObject` during the batch are collected and
+     * afterwards applied to the `Territory` at once, raising a single `TickCommitEvent` instead of an event per change. If the
+     * body throws an exception, none of its changes are applied. A batch within a batch or during a tick in per-tick commit
+     * mode becomes part of the outer one.
+     * 
+     * While the batch is made, the queries already return the new state, see the class comment.
+     * 
+     * NOTE: The body runs while holding the lock of this `Simulation`, so it mustn't wait for a tick, e.g. by calling an action
+     * of an `Entity` that isn't free yet.
+     * 
+     * @param body
+     *            The function that makes the changes
+     */
+    public synchronized void batch(Consumer<Batch> body) {
+        Batch batch = new Batch(this._pending);
+        this._pending = batch;
+        ++this._batchDepth;
+        boolean completed = false;
+        try {
+            body.accept(batch);
+            completed = true;
+        } finally {
+            --this._batchDepth;
+            if (!completed) {
+                this._pending = batch.parent; // discards the batch
+            }
+        }
+        // the batch stays pending until its changes are published, such that the queries never go back to an older state
+        if (batch.parent == null) {
+            this.commit(batch);
+        } else {
+            batch.parent.addAll(batch);
+            this._pending = batch.parent;
+        }
+    }
+
     /**
      * Set the simulation territory
+     * 
+     * Only the differences to the current territory are looked at: `Entity`s whose `WorldObject` is removed die and a new
+     * `Entity` is created for every added `WorldObject`.
      *
      * @param tty
      *            the new territory
      */
-    public void setTerritory(Territory tty) {
-        SimulationEvent ev = new SetTerritoryEvent(this);
-        synchronized (this) {
-            this._entityObjects.values().removeIf(wob -> !tty.contains(wob));
-            tty.forEach(wob -> {
-                if (!this._entityObjects.containsValue(wob)) {
-                    this._entityObjects.put(wob.state.createEntity(this), wob);
-                }
-            });
-            this._tty = tty;
-            EventDispatcher.raise(ev);
-        }
+    public synchronized void setTerritory(Territory tty) {
+        if (this._batchDepth > 0) throw new IllegalStateException("The territory can't be set during a batch");
+        this.commitPending();
+        this.setTerritory(tty, TerritoryDelta.between(this._tty, tty));
+    }
+
+    /**
+     * Applies a delta to the simulation territory. As opposed to `setTerritory`, a replaced `WorldObject` keeps its `Entity`.
+     *
+     * @param delta
+     *            The delta to apply to the current territory
+     * @throws IllegalArgumentException
+     *             if a removed or replaced `WorldObject` isn't contained in the current territory
+     */
+    public synchronized void applyDelta(TerritoryDelta delta) {
+        if (this._batchDepth > 0) throw new IllegalStateException("The territory can't be set during a batch");
+        this.commitPending();
+        this.setTerritory(this._tty.apply(delta), delta);
     }
 
     /**
      * @return All alive `Entity`s within this `Simulation`
      */
-    public synchronized ArrayList<Entity> entities() {
-        return new ArrayList<>(this._entityObjects.keySet());
+    public ArrayList<Entity> entities() {
+        if (this._pending == null) return new ArrayList<>(this._entityObjects.keySet());
+        return this.entitiesWith(ent -> true);
     }
 
     /**
@@ -137,12 +337,13 @@ public class Simulation {
      *            The predicate that the `Entity`s are tested for
      * @return The matching `Entity`s
      */
-    public synchronized ArrayList<Entity> entitiesWith(Predicate<Entity> pred) {
+    public ArrayList<Entity> entitiesWith(Predicate<Entity> pred) {
         ArrayList<Entity> result = new ArrayList<>();
-        this._entityObjects.keySet().forEach(ent -> {
+        this.forEachAlive(Entity.class, ent -> {
             if (pred.test(ent)) {
                 result.add(ent);
             }
+            return true;
         });
         return result;
     }
@@ -157,7 +358,30 @@ public class Simulation {
      * @return The `Entity`s that are in the specified cell
      */
     public ArrayList<Entity> entitiesAt(int column, int row) {
-        return this.entitiesWith(Entity.predicateIsAt(column, row));
+        ArrayList<Entity> result = new ArrayList<>();
+        for (WorldObject wob : this.territory().worldObjectsAt(column, row)) {
+            result.add(this.entity(wob));
+        }
+        return result;
+    }
+
+    /**
+     * Gets all alive `Entity`s within this `Simulation` that are in a certain rectangular region
+     * 
+     * @param minColumn
+     *            The first column of the region
+     * @param minRow
+     *            The first row of the region
+     * @param maxColumn
+     *            The last column of the region
+     * @param maxRow
+     *            The last row of the region
+     * @return The `Entity`s that are in the specified region
+     */
+    public ArrayList<Entity> entitiesIn(int minColumn, int minRow, int maxColumn, int maxRow) {
+        ArrayList<Entity> result = new ArrayList<>();
+        this.territory().forEachIn(minColumn, minRow, maxColumn, maxRow, wob -> result.add(this.entity(wob)));
+        return result;
     }
 
     /**
@@ -174,10 +398,9 @@ public class Simulation {
      *            The predicate that the `CollectableEntity`s are tested for
      * @return The matching `CollectableEntity`s
      */
-    public synchronized ArrayList<CollectableEntity> collectablesWith(Predicate<CollectableEntity> pred) {
-        ArrayList<CollectableEntity> result = new ArrayList<>();
-        this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
-                .map(ent -> (CollectableEntity) ent).filter(pred).forEach(result::add);
+    public ArrayList<CollectableEntity> collectablesWith(Predicate<CollectableEntity> pred) {
+        ArrayList<CollectableEntity> result = this.entitiesOfType(CollectableEntity.class);
+        result.removeIf(pred.negate());
         return result;
     }
 
@@ -190,10 +413,48 @@ public class Simulation {
      *            The row of the cell
      * @return The `CollectableEntity`s that are in the specified cell
      */
-    public synchronized ArrayList<CollectableEntity> collectablesAt(int column, int row) {
-        ArrayList<CollectableEntity> result = new ArrayList<>();
-        this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
-                .filter(Entity.predicateIsAt(column, row)).map(ent -> (CollectableEntity) ent).forEach(result::add);
+    public ArrayList<CollectableEntity> collectablesAt(int column, int row) {
+        return this.entitiesOfTypeAt(CollectableEntity.class, column, row);
+    }
+
+    /**
+     * Gets all alive `Entity`s within this `Simulation` that are instances of a certain type. This only looks at the
+     * `Entity`s of that type.
+     * 
+     * @param <T>
+     *            The type of the `Entity`s
+     * @param type
+     *            The class of the type, which may also be an abstract class or an interface
+     * @return The `Entity`s of the specified type
+     */
+    public <T> ArrayList<T> entitiesOfType(Class<T> type) {
+        ArrayList<T> result = new ArrayList<>();
+        this.forEachAlive(type, ent -> result.add(type.cast(ent)));
+        return result;
+    }
+
+    /**
+     * Gets all alive `Entity`s within this `Simulation` that are instances of a certain type and are in a certain cell. This
+     * only looks at the `Entity`s in that cell.
+     * 
+     * @param <T>
+     *            The type of the `Entity`s
+     * @param type
+     *            The class of the type, which may also be an abstract class or an interface
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return The `Entity`s of the specified type in the specified cell
+     */
+    public <T> ArrayList<T> entitiesOfTypeAt(Class<T> type, int column, int row) {
+        ArrayList<T> result = new ArrayList<>();
+        for (WorldObject wob : this.territory().worldObjectsAt(column, row)) {
+            Entity ent = this.entity(wob);
+            if (type.isInstance(ent)) {
+                result.add(type.cast(ent));
+            }
+        }
         return result;
     }
 
@@ -205,8 +466,8 @@ public class Simulation {
      * 
      * @return true iff at least one alive `Entity` matches the specified predicate
      */
-    public synchronized boolean containsWith(Predicate<Entity> pred) {
-        return this._entityObjects.keySet().stream().filter(pred).findFirst().isPresent();
+    public boolean containsWith(Predicate<Entity> pred) {
+        return !this.forEachAlive(Entity.class, pred.negate());
     }
 
     /**
@@ -219,7 +480,7 @@ public class Simulation {
      * @return true iff at least one alive `Entity` is in the specified cell
      */
     public boolean containsAt(int column, int row) {
-        return this.containsWith(Entity.predicateIsAt(column, row));
+        return this.territory().containsAt(column, row); // every `WorldObject` of the territory has an `Entity`
     }
 
     /**
@@ -230,9 +491,8 @@ public class Simulation {
      * 
      * @return true iff at least one alive `CollectableEntity` matches the specified predicate
      */
-    public synchronized boolean containsCollectableWith(Predicate<CollectableEntity> pred) {
-        return this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
-                .map(ent -> (CollectableEntity) ent).filter(pred).findFirst().isPresent();
+    public boolean containsCollectableWith(Predicate<CollectableEntity> pred) {
+        return !this.forEachAlive(CollectableEntity.class, ent -> !pred.test((CollectableEntity) ent));
     }
 
     /**
@@ -244,21 +504,21 @@ public class Simulation {
      *            The row of the cell
      * @return true iff at least one alive `CollectableEntity` is in the specified cell
      */
-    public synchronized boolean containsCollectableAt(int column, int row) {
-        return this._entityObjects.keySet().stream().filter(ent -> ent instanceof CollectableEntity)
-                .filter(Entity.predicateIsAt(column, row)).findFirst().isPresent();
+    public boolean containsCollectableAt(int column, int row) {
+        return this.territory().containsAt(column, row, wob -> this.entity(wob) instanceof CollectableEntity);
     }
 
     /**
      * Gets the `Territory` that represents the current state of this `Simulation`.
      * 
      * NOTE: When this `Simulation` progresses or has its state changed by other means, the returned `Territory` is obsolete
-     * since `Territory` objects are immutable.
+     * since `Territory` objects are immutable. While changes are pending, it already contains them.
      * 
      * @return The current `Territory`
      */
     public Territory territory() {
-        return this._tty;
+        Batch batch = this._pending;
+        return batch == null ? this._tty : batch.territory;
     }
 
     /**
@@ -267,9 +527,38 @@ public class Simulation {
      * @return The `WorldObject` that represents the current state of the specified `Entity`
      */
     public WorldObject worldObject(Entity ent) {
+        Batch batch = this._pending;
+        if (batch != null) {
+            Optional<WorldObject> wob = batch.get(ent);
+            if (wob != null) return wob.orElse(null);
+        }
         return this._entityObjects.get(ent);
     }
 
+    /**
+     * @param ent
+     *            An `Entity`
+     * @return true iff the specified `Entity` is alive within this `Simulation`
+     */
+    public boolean isAlive(Entity ent) {
+        return this.worldObject(ent) != null;
+    }
+
+    /**
+     * @param wob
+     *            A `WorldObject` of the current `Territory`
+     * @return The `Entity` whose state is represented by the specified `WorldObject` or `null` if there is none.
+     *         `WorldObject`s are compared by identity.
+     */
+    public Entity entity(WorldObject wob) {
+        IdentityKey key = new IdentityKey(wob);
+        for (Batch batch = this._pending; batch != null; batch = batch.parent) {
+            Entity ent = batch.objectEntities.get(key);
+            if (ent != null) return ent;
+        }
+        return this._objectEntities.get(key);
+    }
+
     /**
      * Sets the `WorldObject` that is currently representing the state of an `Entity`.
      * 
@@ -282,17 +571,46 @@ public class Simulation {
      *            The `WorldObject` that will from now represent the specified `Entity`s state. `null` is allowed and has the
      *            effect that the specified `Entity` has no associated `WorldObject`.
      * @param ev
-     *            An event that will be synchronously raised at the end of this method call
+     *            An event that will be synchronously raised at the end of this method call or that becomes part of the
+     *            `TickCommitEvent` during a batch or a tick in per-tick commit mode
      */
     public synchronized void setWorldObject(Entity ent, WorldObject newWob, SimulationEvent ev) {
+        if ((this._pending == null) && this._commitPerTick && this._inTickAction) {
+            this._pending = new Batch(null);
+        }
+        if (this._pending != null) {
+            this._pending.put(ent, newWob, ev);
+            return;
+        }
+        WorldObject oldWob;
         if (newWob == null) {
-            WorldObject oldWob = this._entityObjects.remove(ent);
-            this._tty = oldWob == null ? this._tty : this._tty.remove(oldWob);
+            oldWob = this.unlink(ent);
+            if (oldWob != null) {
+                this._tty = this._tty.remove(oldWob);
+                this.record(() -> TerritoryDelta.removed(oldWob));
+            }
         } else {
-            WorldObject oldWob = this._entityObjects.put(ent, newWob);
-            this._tty = oldWob == null ? this._tty.add(newWob) : this._tty.replace(oldWob, newWob);
+            oldWob = this.link(ent, newWob);
+            if (oldWob == null) {
+                this._tty = this._tty.add(newWob);
+                this.record(() -> TerritoryDelta.added(newWob));
+            } else {
+                this._tty = this._tty.replace(oldWob, newWob);
+                this.record(() -> TerritoryDelta.replaced(oldWob, newWob));
+            }
         }
-        EventDispatcher.raise(ev);
+        if (oldWob != null) {
+            this._objectEntities.remove(new IdentityKey(oldWob));
+        }
+        this._eventBus.raise(ev);
+    }
+
+    /**
+     * @return The bus that delivers the events of this `Simulation`
+     */
+    @Override
+    public EventBus eventBus() {
+        return this._eventBus;
     }
 
     /**
@@ -302,6 +620,107 @@ public class Simulation {
         return this._tickCount;
     }
 
+    /**
+     * @return How many milliseconds the last tick started later than planned or `0` if the ticks aren't driven by a timer
+     */
+    public synchronized double tickLagMillis() {
+        return this._ticker == null ? 0 : this._ticker.lagNanos() / 1e6;
+    }
+
+    /**
+     * @return The number of ticks since the timer was (re)started whose handling took longer than a tick, which delays the
+     *         following ticks, or `0` if the ticks aren't driven by a timer
+     */
+    public synchronized long tickOverruns() {
+        return this._ticker == null ? 0 : this._ticker.overruns();
+    }
+
+    /**
+     * Captures the current state of this `Simulation`: the `Territory`, the tick count, which `Entity` each `WorldObject`
+     * belongs to and the state of the alive `Entity`s that isn't part of their `WorldObject`, like the ticks until which they
+     * are busy, inventories and position histories.
+     * 
+     * The `Territory` and the position histories are immutable, so they are shared instead of copied. Hence taking a snapshot
+     * only costs O(1) per alive `Entity`.
+     * 
+     * NOTE: The programs that control the `Entity`s are not part of a snapshot.
+     * 
+     * @return The snapshot
+     */
+    public synchronized Snapshot snapshot() {
+        if (this._batchDepth > 0) throw new IllegalStateException("A snapshot can't be taken during a batch");
+        this.commitPending();
+        return new Snapshot(this);
+    }
+
+    /**
+     * Restores the state of this `Simulation` from a snapshot of it. `Entity`s that were alive when the snapshot was taken are
+     * alive again and the others die.
+     * 
+     * NOTE: The programs that control the `Entity`s keep running, so this should be called while no programs run, e.g. between
+     * two runs of a task.
+     * 
+     * @param snapshot
+     *            A snapshot of this `Simulation`
+     */
+    public synchronized void restore(Snapshot snapshot) {
+        if (snapshot.simulation != this) throw new IllegalArgumentException("The snapshot belongs to another simulation");
+        if (this._batchDepth > 0) throw new IllegalStateException("A snapshot can't be restored during a batch");
+        this.commitPending();
+        HashMap<Entity, WorldObject> target = new HashMap<>();
+        for (int i = 0; i < snapshot.entities.length; ++i) {
+            target.put(snapshot.entities[i], snapshot.worldObjects[i]);
+        }
+        IdentityHashMap<WorldObject, Entity> outdated = new IdentityHashMap<>();
+        for (Entity ent : this._entityObjects.keySet()) {
+            if (target.get(ent) != this._entityObjects.get(ent)) {
+                outdated.put(this.unlink(ent), ent);
+            }
+        }
+        for (int i = 0; i < snapshot.entities.length; ++i) {
+            if (!this._entityObjects.containsKey(snapshot.entities[i])) {
+                this.link(snapshot.entities[i], snapshot.worldObjects[i]);
+            }
+        }
+        Territory old = this._tty;
+        this._tty = snapshot.territory;
+        outdated.forEach((wob, ent) -> this._objectEntities.remove(new IdentityKey(wob), ent));
+        for (int i = 0; i < snapshot.entities.length; ++i) {
+            snapshot.entities[i].restore(snapshot.mementos[i], Function.identity());
+        }
+        this._tickCount = snapshot.tickCount;
+        TerritoryDelta delta = TerritoryDelta.between(old, this._tty);
+        this.record(() -> delta);
+        this._eventBus.raise(new SetTerritoryEvent(this, delta));
+    }
+
+    /**
+     * Creates a new `Simulation` with the current state of this `Simulation` as captured by `snapshot()`. Every `Entity` is
+     * copied, including the `Entity`s in inventories. The fork has the same number of milliseconds per tick and modes as this
+     * `Simulation`, but is paused.
+     * 
+     * As opposed to `Simulation(Simulation)`, the state of the `Entity`s that isn't part of their `WorldObject` is kept and
+     * the `Territory` is shared instead of rebuilt.
+     * 
+     * @return The fork
+     */
+    public Simulation fork() {
+        return this.fork(this.snapshot());
+    }
+
+    /**
+     * Creates a new `Simulation` with the state of a snapshot, see `fork()`. This allows to run many variants from the same
+     * state.
+     * 
+     * @param snapshot
+     *            A snapshot of this `Simulation`
+     * @return The fork
+     */
+    public Simulation fork(Snapshot snapshot) {
+        if (snapshot.simulation != this) throw new IllegalArgumentException("The snapshot belongs to another simulation");
+        return new Simulation(this, snapshot);
+    }
+
     /**
      * Sets the number of milliseconds per tick. Prior to the first call of this method, the number of milliseconds per tick has
      * a default value of `10`.
@@ -312,48 +731,588 @@ public class Simulation {
     public synchronized void setTickMillis(int millis) {
         if (millis <= 0) throw new IllegalArgumentException();
         this._tickMillis = millis;
-        if (this._running) {
-            stopTimer();
-            startTimer();
+        if (this._running && !this._fastForward) {
+            this.startTimer();
+        }
+    }
+
+    /**
+     * @return The number of milliseconds per tick
+     */
+    public synchronized int tickMillis() {
+        return this._tickMillis;
+    }
+
+    // package private
+
+    /**
+     * @return The id of a new `Entity` of this `Simulation`
+     */
+    int nextEntityId() {
+        return this._entityCount.getAndIncrement();
+    }
+
+    void addStepper(ParallelStepper stepper) {
+        this._steppers.addIfAbsent(stepper);
+    }
+
+    boolean removeStepper(ParallelStepper stepper) {
+        return this._steppers.remove(stepper);
+    }
+
+    void addHistory(SimulationHistory history) {
+        this._histories.addIfAbsent(history);
+    }
+
+    boolean removeHistory(SimulationHistory history) {
+        return this._histories.remove(history);
+    }
+
+    /**
+     * Sets the tick count, e.g. when rewinding with a `SimulationHistory`
+     */
+    synchronized void setTickCount(int tickCount) {
+        this._tickCount = tickCount;
+    }
+
+    /**
+     * Advances the clock by one tick, independently of a timer or the fast-forward mode. This mustn't be called while holding
+     * the lock of this `Simulation`, see `prepareTick`.
+     */
+    void advanceTick() {
+        this.prepareTick().run();
+    }
+
+    /**
+     * Blocks the calling thread until a certain tick has happened and then runs an action while holding the lock of this
+     * `Simulation`. In fast-forward mode, the calling thread advances the clock itself if no other thread waits for an earlier
+     * tick and all threads that were woken by the last tick have run their action.
+     * 
+     * The waiting threads are kept in a priority queue by the tick they wait for, so a tick only wakes the threads whose tick
+     * has come instead of all of them. This mustn't be called while holding the lock of this `Simulation`.
+     * 
+     * @param tick
+     *            The tick to wait for
+     * @param action
+     *            The action to run
+     */
+    void runAt(int tick, Runnable action) {
+        Waiter waiter = new Waiter(tick, Thread.currentThread());
+        synchronized (this) {
+            boolean busy = this._busyThreads.remove(waiter.thread);
+            if (this._tickCount >= tick) {
+                action.run();
+                if (busy) {
+                    this._busyThreads.add(waiter.thread); // it hasn't waited, so it is still between two actions
+                }
+                return;
+            }
+            this._waiters.add(waiter);
+        }
+        boolean interrupted = false;
+        Runnable nextTick = null;
+        try {
+            while (true) {
+                Runnable preparedTick = nextTick;
+                nextTick = null;
+                boolean othersBusy = false;
+                boolean advance = false;
+                synchronized (this) {
+                    if (waiter.woken) {
+                        try {
+                            this._inTickAction = true;
+                            action.run();
+                        } finally {
+                            this._inTickAction = false;
+                            --this._wokenWaiters;
+                            this._busyThreads.add(waiter.thread);
+                            if (this._wokenWaiters == 0) {
+                                this._actionsDoneNanos = System.nanoTime();
+                                this.commitPending(); // all actions of the tick have been run
+                            }
+                            this.wakeEarliestWaiter(); // it might have to advance the clock now
+                        }
+                        return;
+                    }
+                    if (this.mayFastForward() && (this._waiters.peek().tick >= tick)) {
+                        othersBusy = this.othersBusy();
+                        if (!othersBusy && (preparedTick != null)) {
+                            preparedTick.run(); // the lock is released between two ticks, such that pausing isn't held up
+                            continue;
+                        }
+                        advance = !othersBusy;
+                    }
+                }
+                if (advance) {
+                    nextTick = this.prepareTick(); // without holding the lock, then check again whether to advance the clock
+                } else if (othersBusy) {
+                    // give the busy threads the chance to call `runAt` again before the clock is advanced
+                    LockSupport.parkNanos(this, BUSY_POLL_NANOS);
+                } else {
+                    LockSupport.park(this);
+                }
+                interrupted |= Thread.interrupted(); // keep waiting like before, but preserve the interrupt
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
     // private
 
+    private void setTerritory(Territory tty, TerritoryDelta delta) {
+        ArrayList<WorldObject> outdated = new ArrayList<>();
+        for (WorldObject wob : delta.removed()) {
+            Entity ent = this.entity(wob);
+            if (ent != null) {
+                outdated.add(this.unlink(ent));
+            }
+        }
+        for (TerritoryDelta.Replacement replacement : delta.replaced()) {
+            Entity ent = this.entity(replacement.oldWob);
+            if (ent == null) {
+                this.link(replacement.newWob.state.createEntity(this), replacement.newWob);
+            } else {
+                outdated.add(this.link(ent, replacement.newWob));
+            }
+        }
+        for (WorldObject wob : delta.added()) {
+            this.link(wob.state.createEntity(this), wob);
+        }
+        this._tty = tty;
+        for (WorldObject wob : outdated) {
+            this._objectEntities.remove(new IdentityKey(wob));
+        }
+        this.record(() -> delta);
+        this._eventBus.raise(new SetTerritoryEvent(this, delta));
+    }
+
+    /**
+     * Passes a change of the territory to the histories. The delta is only created if there is a history.
+     */
+    private void record(Supplier<TerritoryDelta> delta) {
+        if (this._histories.isEmpty()) return;
+        TerritoryDelta d = delta.get();
+        for (SimulationHistory history : this._histories) {
+            history.changed(d);
+        }
+    }
+
+    /**
+     * Commits the batch that collects the changes of the current tick in per-tick commit mode, if there is one
+     */
+    private void commitPending() {
+        if ((this._pending != null) && (this._batchDepth == 0)) {
+            this.commit(this._pending);
+        }
+    }
+
+    /**
+     * Commits the outermost pending batch and ends it
+     */
+    private void commit(Batch batch) {
+        if (batch.order.isEmpty()) {
+            this._pending = null;
+            return;
+        }
+        ArrayList<WorldObject> added = new ArrayList<>();
+        ArrayList<WorldObject> removed = new ArrayList<>();
+        ArrayList<TerritoryDelta.Replacement> replaced = new ArrayList<>();
+        ArrayList<WorldObject> outdated = new ArrayList<>();
+        for (Entity ent : batch.order) {
+            WorldObject newWob = batch.changes.get(ent).orElse(null);
+            if (newWob == null) {
+                WorldObject oldWob = this.unlink(ent);
+                if (oldWob != null) {
+                    removed.add(oldWob);
+                    outdated.add(oldWob);
+                }
+            } else {
+                WorldObject oldWob = this.link(ent, newWob);
+                if (oldWob == null) {
+                    added.add(newWob);
+                } else if (oldWob != newWob) {
+                    replaced.add(new TerritoryDelta.Replacement(oldWob, newWob));
+                    outdated.add(oldWob);
+                }
+            }
+        }
+        TerritoryDelta delta = new TerritoryDelta(added, removed, replaced);
+        this._tty = batch.territory; // the changes have already been applied one by one
+        this._pending = null;
+        for (WorldObject wob : outdated) {
+            this._objectEntities.remove(new IdentityKey(wob));
+        }
+        this.record(() -> delta);
+        this._eventBus.raise(new TickCommitEvent(this, this._tickCount, delta, batch.events));
+    }
+
+    /**
+     * Associates an `Entity` with a `WorldObject` in all maps and indexes. The previous `WorldObject` is still mapped to the
+     * `Entity` and has to be removed from `_objectEntities` once the new `Territory` is published.
+     * 
+     * @return The previous `WorldObject` of the `Entity` or `null` if it wasn't alive
+     */
+    private WorldObject link(Entity ent, WorldObject wob) {
+        this._objectEntities.put(new IdentityKey(wob), ent);
+        WorldObject oldWob = this._entityObjects.put(ent, wob);
+        if (oldWob == null) {
+            Set<Entity> entities = this._entitiesByClass.get(ent.getClass());
+            if (entities == null) {
+                entities = ConcurrentHashMap.newKeySet();
+                this._entitiesByClass.put(ent.getClass(), entities);
+                ++this._classesVersion; // a new class might be a subtype of any cached type
+            }
+            entities.add(ent);
+        }
+        return oldWob;
+    }
+
+    /**
+     * Removes an `Entity` from all maps and indexes except `_objectEntities`, from which the returned `WorldObject` has to be
+     * removed once the new `Territory` is published.
+     * 
+     * @return The previous `WorldObject` of the `Entity` or `null` if it wasn't alive
+     */
+    private WorldObject unlink(Entity ent) {
+        WorldObject oldWob = this._entityObjects.remove(ent);
+        if (oldWob != null) {
+            this._entitiesByClass.get(ent.getClass()).remove(ent); // empty sets are kept, since their class is likely to return
+        }
+        return oldWob;
+    }
+
+    /**
+     * Calls a function for every alive `Entity` of a type, including the pending changes, until it returns false. This only
+     * looks at the `Entity`s of that type and at the pending changes.
+     * 
+     * @return false iff the function has returned false
+     */
+    private boolean forEachAlive(Class<?> type, Predicate<Entity> action) {
+        Batch batch = this._pending;
+        List<Set<Entity>> sets = type == Entity.class ? Collections.singletonList(this._entityObjects.keySet())
+                : this.entitySetsOfType(type);
+        for (Set<Entity> entities : sets) {
+            for (Entity ent : entities) {
+                Optional<WorldObject> pending = batch == null ? null : batch.get(ent);
+                if ((pending != null) && !pending.isPresent()) continue; // dies in the batch
+                if (!action.test(ent)) return false;
+            }
+        }
+        if (batch != null) {
+            for (Entity ent : batch.born()) {
+                if (type.isInstance(ent) && !action.test(ent)) return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Set<Entity>> entitySetsOfType(Class<?> type) {
+        SupertypeEntry entry = this._entitiesBySupertype.get(type);
+        int version = this._classesVersion; // read before the classes, so a class that is added meanwhile invalidates the entry
+        if ((entry == null) || (entry.version != version)) {
+            ArrayList<Set<Entity>> sets = new ArrayList<>();
+            this._entitiesByClass.forEach((cls, entities) -> {
+                if (type.isAssignableFrom(cls)) {
+                    sets.add(entities);
+                }
+            });
+            entry = new SupertypeEntry(version, sets);
+            this._entitiesBySupertype.put(type, entry);
+        }
+        return entry.sets;
+    }
+
     private void init(Territory tty) {
         this.setTerritory(tty);
-        EventDispatcher.raise(new InitEvent(this));
+        this._eventBus.raise(new InitEvent(this));
     }
 
     private void startTimer() {
-        this._timerTaskSem = new Semaphore(1);
-        this._timerTask = new TimerTask() {
-            private final Semaphore sem = Simulation.this._timerTaskSem;
-
-            @Override
-            public void run() {
-                synchronized (Simulation.this) {
-                    if (!this.sem.tryAcquire()) {
-                        this.cancel();
+        this.stopTimer(); // there is at most one registration per `Simulation`
+        this._ticker = TickScheduler.schedule(this, this::prepareTick, this._tickMillis);
+    }
+
+    private void stopTimer() {
+        if (this._ticker != null) {
+            this._ticker.cancel(); // we hold the lock, so no tick happens after this
+            this._ticker = null;
+        }
+    }
+
+    /**
+     * Prepares the next tick: The steppers compute the proposals of their `Entity`s, which may query this `Simulation`, so this
+     * mustn't be called while holding its lock.
+     * 
+     * @return The task that runs the tick, which takes the lock
+     */
+    private Runnable prepareTick() {
+        if (this._steppers.isEmpty()) return () -> this.tick(Collections.emptyMap());
+        IdentityHashMap<ParallelStepper, Runnable> steps = new IdentityHashMap<>();
+        for (ParallelStepper stepper : this._steppers) {
+            steps.put(stepper, stepper.propose());
+        }
+        return () -> this.tick(steps);
+    }
+
+    /**
+     * @param steps
+     *            The tasks that commit the proposals of the steppers, see `prepareTick`
+     */
+    private synchronized void tick(Map<ParallelStepper, Runnable> steps) {
+        this.commitPending(); // in case that not all threads woken by the last tick have run their action yet
+        for (SimulationHistory history : this._histories) {
+            history.tickEnded(this._tickCount);
+        }
+        ++this._tickCount;
+        this._actionsDoneNanos = System.nanoTime(); // in case that the tick doesn't wake any thread
+        for (ParallelStepper stepper : this._steppers) {
+            Runnable step = steps.get(stepper);
+            if (step != null) { // not if the stepper has been started after the tick was prepared
+                step.run();
+            }
+        }
+        while (!this._waiters.isEmpty() && (this._waiters.peek().tick <= this._tickCount)) {
+            Waiter waiter = this._waiters.poll();
+            waiter.woken = true;
+            ++this._wokenWaiters;
+            LockSupport.unpark(waiter.thread);
+        }
+        this._eventBus.raise(new TickEvent(this, this._tickCount));
+    }
+
+    /**
+     * In fast-forward mode, the earliest waiting thread advances the clock, so it has to be woken if the mode or the earliest
+     * thread changes.
+     */
+    private void wakeEarliestWaiter() {
+        if (this.mayFastForward() && !this._waiters.isEmpty()) {
+            LockSupport.unpark(this._waiters.peek().thread);
+        }
+    }
+
+    /**
+     * @return true iff a thread that has run an action after waiting hasn't called `runAt` again and less than the number of
+     *         milliseconds per tick have passed since the actions of the last tick have been run, see `setFastForward`
+     */
+    private boolean othersBusy() {
+        this._busyThreads.removeIf(thread -> !thread.isAlive());
+        return !this._busyThreads.isEmpty()
+                && ((System.nanoTime() - this._actionsDoneNanos) < TimeUnit.MILLISECONDS.toNanos(this._tickMillis));
+    }
+
+    private boolean mayFastForward() {
+        return this._fastForward && this._running && (this._wokenWaiters == 0);
+    }
+
+    /**
+     * The state of a `Simulation` at a certain point in time, see `Simulation.snapshot()`
+     */
+    public static final class Snapshot {
+        final Simulation simulation;
+        final Territory territory;
+        final int tickCount;
+        /** The alive `Entity`s ordered by their id, such that forks create their copies in a reproducible order */
+        final Entity[] entities;
+        final WorldObject[] worldObjects;
+        final Entity.Memento[] mementos;
+
+        Snapshot(Simulation sim) {
+            this.simulation = sim;
+            this.territory = sim._tty;
+            this.tickCount = sim._tickCount;
+            this.entities = sim._entityObjects.keySet().toArray(new Entity[0]);
+            Arrays.sort(this.entities, Comparator.comparingInt(Entity::id));
+            this.worldObjects = new WorldObject[this.entities.length];
+            this.mementos = new Entity.Memento[this.entities.length];
+            for (int i = 0; i < this.entities.length; ++i) {
+                this.worldObjects[i] = sim._entityObjects.get(this.entities[i]);
+                this.mementos[i] = this.entities[i].memento();
+            }
+        }
+
+        /**
+         * @return The `Territory` of the `Simulation` when the snapshot was taken
+         */
+        public Territory territory() {
+            return this.territory;
+        }
+
+        /**
+         * @return The tick count of the `Simulation` when the snapshot was taken
+         */
+        public int tickCount() {
+            return this.tickCount;
+        }
+    }
+
+    /**
+     * The changes to `WorldObject`s made during a call of `Simulation.batch`
+     */
+    public final class Batch {
+        final Batch parent;
+        /** The new `WorldObject` of every changed `Entity`, which is empty if it dies */
+        final ConcurrentHashMap<Entity, Optional<WorldObject>> changes = new ConcurrentHashMap<>();
+        /** The changed `Entity`s in the order of their first change */
+        final ArrayList<Entity> order = new ArrayList<>();
+        final ArrayList<SimulationEvent> events = new ArrayList<>();
+        /** The `Territory` with the changes of this batch and the outer ones */
+        volatile Territory territory;
+        /** The `Entity`s of the `WorldObject`s that have been set in this batch, keyed by identity */
+        final ConcurrentHashMap<IdentityKey, Entity> objectEntities = new ConcurrentHashMap<>();
+
+        Batch(Batch parent) {
+            this.parent = parent;
+            this.territory = parent == null ? Simulation.this._tty : parent.territory;
+        }
+
+        /**
+         * Sets the `WorldObject` of an `Entity` as part of this batch. This is the same as calling
+         * `Simulation.setWorldObject` during the batch.
+         * 
+         * @param ent
+         *            An `Entity` that is associated with the `Simulation` but not necessarily alive
+         * @param newWob
+         *            The `WorldObject` that will represent the specified `Entity`s state or `null`
+         * @param ev
+         *            An event that becomes part of the `TickCommitEvent` or `null`
+         */
+        public void setWorldObject(Entity ent, WorldObject newWob, SimulationEvent ev) {
+            Simulation.this.setWorldObject(ent, newWob, ev);
+        }
+
+        /**
+         * @return The number of `Entity`s that have been changed in this batch so far
+         */
+        public int size() {
+            return this.order.size();
+        }
+
+        /**
+         * @return The new `WorldObject` of an `Entity` in this batch or an outer one, `Optional.empty()` if it dies or `null`
+         *         if it hasn't been changed
+         */
+        Optional<WorldObject> get(Entity ent) {
+            for (Batch batch = this; batch != null; batch = batch.parent) {
+                Optional<WorldObject> wob = batch.changes.get(ent);
+                if (wob != null) return wob;
+            }
+            return null;
+        }
+
+        /**
+         * @return The `Entity`s that are alive in this batch but not in the committed state
+         */
+        ArrayList<Entity> born() {
+            ArrayList<Entity> result = new ArrayList<>();
+            Set<Entity> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Batch batch = this; batch != null; batch = batch.parent) {
+                for (Entity ent : batch.changes.keySet()) { // not `order`, which isn't safe to read concurrently
+                    if (seen.add(ent) && this.get(ent).isPresent() && !Simulation.this._entityObjects.containsKey(ent)) {
+                        result.add(ent);
                     }
-                    Simulation.this.tick(this.sem::release);
                 }
             }
-        };
-        new Timer().schedule(this._timerTask, this._tickMillis, this._tickMillis);
+            return result;
+        }
+
+        /**
+         * Changes the `WorldObject` of an `Entity` in this batch and in its `Territory`
+         */
+        void put(Entity ent, WorldObject newWob, SimulationEvent ev) {
+            Optional<WorldObject> pending = this.get(ent);
+            WorldObject oldWob = pending != null ? pending.orElse(null) : Simulation.this._entityObjects.get(ent);
+            if (newWob != null) {
+                this.objectEntities.put(new IdentityKey(newWob), ent); // before it is published in the territory
+            }
+            if (oldWob != newWob) {
+                if (oldWob == null) {
+                    this.territory = this.territory.add(newWob);
+                } else if (newWob == null) {
+                    this.territory = this.territory.remove(oldWob);
+                } else {
+                    this.territory = this.territory.replace(oldWob, newWob);
+                }
+            }
+            this.record(ent, newWob, ev);
+        }
+
+        /**
+         * Takes over the changes of an inner batch that has completed
+         */
+        void addAll(Batch batch) {
+            for (Entity ent : batch.order) {
+                this.record(ent, batch.changes.get(ent).orElse(null), null);
+            }
+            this.events.addAll(batch.events);
+            this.objectEntities.putAll(batch.objectEntities);
+            this.territory = batch.territory;
+        }
+
+        private void record(Entity ent, WorldObject newWob, SimulationEvent ev) {
+            if (this.changes.put(ent, Optional.ofNullable(newWob)) == null) {
+                this.order.add(ent);
+            }
+            if (ev != null) {
+                this.events.add(ev);
+            }
+        }
     }
 
-    private void stopTimer() {
-        if (this._timerTaskSem != null) {
-            this._timerTaskSem.acquireUninterruptibly();
+    /**
+     * A key that compares `WorldObject`s by identity, since `ConcurrentHashMap` and `LinkedHashMap` have no identity variant
+     */
+    static final class IdentityKey {
+        final WorldObject wob;
+
+        IdentityKey(WorldObject wob) {
+            this.wob = wob;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof IdentityKey) && (((IdentityKey) o).wob == this.wob);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this.wob);
         }
-        this._timerTaskSem = null;
-        this._timerTask = null;
     }
 
-    private synchronized void tick(Runnable afterwards) {
-        ++this._tickCount;
-        EventDispatcher.raise(new TickEvent(this, this._tickCount), afterwards);
+    /**
+     * The sets of `_entitiesByClass` whose class is a subtype of a certain type
+     */
+    private static final class SupertypeEntry {
+        /** The value of `_classesVersion` before the sets were collected */
+        final int version;
+        final List<Set<Entity>> sets;
+
+        SupertypeEntry(int version, List<Set<Entity>> sets) {
+            this.version = version;
+            this.sets = sets;
+        }
+    }
+
+    /**
+     * A thread that waits for a tick in `runAt`
+     */
+    private static final class Waiter implements Comparable<Waiter> {
+        final int tick;
+        final Thread thread;
+        boolean woken = false; // guarded by the lock of the `Simulation`
+
+        Waiter(int tick, Thread thread) {
+            this.tick = tick;
+            this.thread = thread;
+        }
+
+        @Override
+        public int compareTo(Waiter o) {
+            return Integer.compare(this.tick, o.tick);
+        }
     }
 
     // Events
@@ -374,6 +1333,14 @@ public class Simulation {
         SimulationEvent(Simulation sim) {
             this.simulation = sim;
         }
+
+        /**
+         * @return The simulation this event is for
+         */
+        @Override
+        public Object source() {
+            return this.simulation;
+        }
     }
 
     /**
@@ -442,18 +1409,72 @@ public class Simulation {
         }
     }
 
+    /**
+     * An event for when the changes of a `batch` or of a tick in per-tick commit mode are applied to the territory
+     */
+    public static class TickCommitEvent extends SimulationEvent {
+        /** The tick count at the point of this event */
+        public final int tickCount;
+        /** The changes to the territory */
+        public final TerritoryDelta delta;
+        /** The events of the single changes in the order they were made, which haven't been raised on their own */
+        public final List<SimulationEvent> events;
+
+        /**
+         * Creates a new tick commit event for the given simulation
+         * 
+         * @param sim
+         *            The simulation this event is for
+         * @param tickCount
+         *            The tick count at the point of this event
+         * @param delta
+         *            The changes to the territory
+         * @param events
+         *            The events of the single changes
+         */
+        TickCommitEvent(Simulation sim, int tickCount, TerritoryDelta delta, List<SimulationEvent> events) {
+            super(sim);
+            this.tickCount = tickCount;
+            this.delta = delta;
+            this.events = Collections.unmodifiableList(new ArrayList<>(events));
+        }
+
+        /**
+         * @param <T>
+         *            The type of the events
+         * @param type
+         *            The class of the type
+         * @return The events of the single changes that are instances of the specified type
+         */
+        public <T> List<T> eventsOf(Class<T> type) {
+            ArrayList<T> result = new ArrayList<>();
+            for (SimulationEvent ev : this.events) {
+                if (type.isInstance(ev)) {
+                    result.add(type.cast(ev));
+                }
+            }
+            return result;
+        }
+    }
+
     /**
      * An event for when a new territory is set in a simulation
      */
     public static class SetTerritoryEvent extends SimulationEvent {
+        /** The changes from the previous to the new territory */
+        public final TerritoryDelta delta;
+
         /**
          * Creates a new set territory event for the given simulation
          * 
          * @param sim
          *            The simulation this event is for
+         * @param delta
+         *            The changes from the previous to the new territory
          */
-        SetTerritoryEvent(Simulation sim) {
+        SetTerritoryEvent(Simulation sim, TerritoryDelta delta) {
             super(sim);
+            this.delta = delta;
         }
     }
 }
@@ -0,0 +1,285 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.IdentityKey;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.Snapshot;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.TerritoryDelta;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+
+/**
+ * A bounded history of a `Simulation`, which allows to look at the `Territory` of any recorded tick and to rewind the
+ * `Simulation` to it, e.g. to seek through a long run in a debugging UI without running it again.
+ *
+ * For every tick, the history records a `TerritoryDelta` of the changes during that tick. Every few ticks, it also records a
+ * keyframe, which is a `Simulation.Snapshot`. To get the state of a tick, the history starts at the latest keyframe before it
+ * and applies the deltas in between, which takes O(log k + d log n) for k keyframes, d changes and n `WorldObject`s. Since
+ * `Territory`s share their structure, keyframes are cheap to keep.
+ *
+ * The state of a tick is the state after all changes during that tick. The state of the `Entity`s that isn't part of their
+ * `WorldObject`, like inventories, is only recorded at keyframes, and an `Entity` that spawns between a keyframe and the tick
+ * to rewind to is created anew.
+ */
+public class SimulationHistory {
+
+    private final Simulation _sim;
+    private final int _maxTicks;
+    private final int _keyframeInterval;
+    /** The recorded keyframes ordered by tick, each with the deltas of the following ticks */
+    private final ArrayList<Keyframe> _keyframes = new ArrayList<>();
+    /** The changes during the current tick */
+    private DeltaBuilder _current = new DeltaBuilder();
+    /** Whether this history rewinds its simulation and thus ignores the changes */
+    private boolean _rewinding = false;
+
+    /**
+     * Creates a new history
+     *
+     * @param sim
+     *            The simulation to record
+     * @param maxTicks
+     *            The number of past ticks that are kept at least. Older ticks are dropped in chunks of `keyframeInterval`.
+     * @param keyframeInterval
+     *            The number of ticks between two keyframes
+     */
+    public SimulationHistory(Simulation sim, int maxTicks, int keyframeInterval) {
+        if ((sim == null) || (maxTicks <= 0) || (keyframeInterval <= 0)) throw new IllegalArgumentException();
+        this._sim = sim;
+        this._maxTicks = maxTicks;
+        this._keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Starts recording. The current state becomes the first keyframe.
+     */
+    public void start() {
+        synchronized (this._sim) {
+            synchronized (this) {
+                this.clear(this._sim.snapshot());
+            }
+            this._sim.addHistory(this);
+        }
+    }
+
+    /**
+     * Stops recording. The recorded ticks are kept.
+     */
+    public void stop() {
+        this._sim.removeHistory(this);
+    }
+
+    /**
+     * @return The oldest recorded tick or `-1` if nothing has been recorded yet
+     */
+    public synchronized int oldestTick() {
+        return this._keyframes.isEmpty() ? -1 : this._keyframes.get(0).tick;
+    }
+
+    /**
+     * @return The newest recorded tick or `-1` if nothing has been recorded yet
+     */
+    public synchronized int newestTick() {
+        if (this._keyframes.isEmpty()) return -1;
+        Keyframe last = this._keyframes.get(this._keyframes.size() - 1);
+        return last.tick + last.deltas.size();
+    }
+
+    /**
+     * Gets the `Territory` of a recorded tick
+     *
+     * @param tick
+     *            A tick between `oldestTick()` and `newestTick()`
+     * @return The `Territory` after all changes during the specified tick
+     * @throws IllegalArgumentException
+     *             if the tick isn't recorded
+     */
+    public synchronized Territory territoryAt(int tick) {
+        Keyframe key = this.keyframeAt(tick);
+        Territory tty = key.snapshot.territory();
+        for (int t = key.tick + 1; t <= tick; ++t) {
+            tty = tty.apply(key.deltas.get(t - key.tick - 1));
+        }
+        return tty;
+    }
+
+    /**
+     * Rewinds the simulation to a recorded tick. The ticks after it are dropped from this history. The simulation should be
+     * paused and no programs should run, since they aren't part of the history.
+     *
+     * @param tick
+     *            A tick between `oldestTick()` and `newestTick()`
+     * @throws IllegalArgumentException
+     *             if the tick isn't recorded
+     */
+    public void rewind(int tick) {
+        synchronized (this._sim) {
+            synchronized (this) {
+                Keyframe key = this.keyframeAt(tick);
+                this._rewinding = true;
+                try {
+                    this._sim.restore(key.snapshot);
+                    for (int t = key.tick + 1; t <= tick; ++t) {
+                        this._sim.applyDelta(key.deltas.get(t - key.tick - 1));
+                    }
+                    this._sim.setTickCount(tick);
+                } finally {
+                    this._rewinding = false;
+                }
+                // drop the ticks after `tick`, the changes during `tick` are continued
+                while (this._keyframes.get(this._keyframes.size() - 1) != key) {
+                    this._keyframes.remove(this._keyframes.size() - 1);
+                }
+                while (key.deltas.size() > (tick - key.tick)) {
+                    key.deltas.remove(key.deltas.size() - 1);
+                }
+                this._current = new DeltaBuilder();
+                if (!key.deltas.isEmpty()) {
+                    this._current.add(key.deltas.remove(key.deltas.size() - 1));
+                }
+            }
+        }
+    }
+
+    // package private
+
+    /**
+     * Records a change of the territory. This is called by the simulation while holding its lock.
+     */
+    synchronized void changed(TerritoryDelta delta) {
+        if (!this._rewinding) {
+            this._current.add(delta);
+        }
+    }
+
+    /**
+     * Records the end of a tick. This is called by the simulation while holding its lock.
+     */
+    synchronized void tickEnded(int tick) {
+        Keyframe last = this._keyframes.get(this._keyframes.size() - 1);
+        int expected = last.tick + last.deltas.size() + 1;
+        if ((tick != expected) && !((tick == last.tick) && last.deltas.isEmpty())) {
+            this.clear(new Snapshot(this._sim)); // the tick count was changed, e.g. by restoring a snapshot
+            return;
+        }
+        if (tick == last.tick) {
+            // the keyframe was taken during this tick, e.g. when rewinding to it
+            if (!this._current.isEmpty()) {
+                this._keyframes.set(this._keyframes.size() - 1, new Keyframe(new Snapshot(this._sim)));
+                this._current = new DeltaBuilder();
+            }
+            return;
+        }
+        last.deltas.add(this._current.build());
+        this._current = new DeltaBuilder();
+        if ((tick - last.tick) >= this._keyframeInterval) {
+            this._keyframes.add(new Keyframe(new Snapshot(this._sim)));
+        }
+        while ((this._keyframes.size() > 1) && (this._keyframes.get(1).tick <= (tick - this._maxTicks))) {
+            this._keyframes.remove(0);
+        }
+    }
+
+    // private
+
+    private void clear(Snapshot snapshot) {
+        this._keyframes.clear();
+        this._keyframes.add(new Keyframe(snapshot));
+        this._current = new DeltaBuilder();
+    }
+
+    /**
+     * @return The latest keyframe at or before a recorded tick
+     */
+    private Keyframe keyframeAt(int tick) {
+        if ((tick < this.oldestTick()) || (tick > this.newestTick())) {
+            throw new IllegalArgumentException("The tick " + tick + " isn't recorded");
+        }
+        int low = 0;
+        int high = this._keyframes.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this._keyframes.get(mid).tick <= tick) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return this._keyframes.get(low);
+    }
+
+    /**
+     * A snapshot with the deltas of the ticks after it
+     */
+    private static final class Keyframe {
+        final int tick;
+        final Snapshot snapshot;
+        final ArrayList<TerritoryDelta> deltas = new ArrayList<>();
+
+        Keyframe(Snapshot snapshot) {
+            this.tick = snapshot.tickCount();
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * Combines the deltas during a tick into a single delta, e.g. two replacements of the same `WorldObject` into one
+     */
+    private static final class DeltaBuilder {
+        /**
+         * Maps every current `WorldObject` that was changed to the `WorldObject` it replaces or `null` if it was added, in the
+         * order of the changes, such that the built delta doesn't depend on identity hash codes
+         */
+        private final LinkedHashMap<IdentityKey, WorldObject> _origins = new LinkedHashMap<>();
+        private final ArrayList<WorldObject> _removed = new ArrayList<>();
+
+        void add(TerritoryDelta delta) {
+            for (WorldObject wob : delta.removed()) {
+                IdentityKey key = new IdentityKey(wob);
+                if (!this._origins.containsKey(key)) {
+                    this._removed.add(wob);
+                } else {
+                    WorldObject origin = this._origins.remove(key);
+                    if (origin != null) {
+                        this._removed.add(origin);
+                    }
+                }
+            }
+            for (TerritoryDelta.Replacement replacement : delta.replaced()) {
+                IdentityKey oldKey = new IdentityKey(replacement.oldWob);
+                WorldObject origin = this._origins.containsKey(oldKey) ? this._origins.remove(oldKey) : replacement.oldWob;
+                this._origins.put(new IdentityKey(replacement.newWob), origin);
+            }
+            for (WorldObject wob : delta.added()) {
+                this._origins.put(new IdentityKey(wob), null);
+            }
+        }
+
+        boolean isEmpty() {
+            return this._origins.isEmpty() && this._removed.isEmpty();
+        }
+
+        TerritoryDelta build() {
+            if (this.isEmpty()) return TerritoryDelta.EMPTY;
+            ArrayList<WorldObject> added = new ArrayList<>();
+            ArrayList<TerritoryDelta.Replacement> replaced = new ArrayList<>();
+            for (Map.Entry<IdentityKey, WorldObject> entry : this._origins.entrySet()) {
+                if (entry.getValue() == null) {
+                    added.add(entry.getKey().wob);
+                } else {
+                    replaced.add(new TerritoryDelta.Replacement(entry.getValue(), entry.getKey().wob));
+                }
+            }
+            return new TerritoryDelta(added, this._removed, replaced);
+        }
+    }
+}
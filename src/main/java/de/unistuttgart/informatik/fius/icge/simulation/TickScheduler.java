@@ -0,0 +1,123 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The scheduler that drives the ticks of all running `Simulation`s.
+ *
+ * Instead of a `java.util.Timer` thread per started timer, all `Simulation`s share a small pool of daemon threads that
+ * terminate when they are idle. Every registration has its own rate, can be cancelled and measures how late its ticks are.
+ */
+final class TickScheduler {
+
+    private static final ScheduledThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private TickScheduler() {}
+
+    /**
+     * Schedules a tick task with a fixed delay between the end of a tick and the start of the next one
+     *
+     * @param lock
+     *            The object to synchronize on while running a tick. `Registration.cancel()` has to be called while holding
+     *            this lock, which guarantees that no tick is run after it returns.
+     * @param tick
+     *            The function that prepares every tick without holding the lock and returns the task to run while holding
+     *            it
+     * @param periodMillis
+     *            The number of milliseconds per tick
+     * @return The registration of the task
+     */
+    static Registration schedule(Object lock, Supplier<Runnable> tick, int periodMillis) {
+        Registration registration = new Registration(lock, tick, periodMillis);
+        registration._future = EXECUTOR.scheduleWithFixedDelay(registration, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return registration;
+    }
+
+    private static ScheduledThreadPoolExecutor createExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "ICGE tick scheduler " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), factory);
+        executor.setRemoveOnCancelPolicy(true);
+        executor.setKeepAliveTime(10, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A scheduled tick task
+     */
+    static final class Registration implements Runnable {
+        private final Object _lock;
+        private final Supplier<Runnable> _tick;
+        private final long _periodNanos;
+        private ScheduledFuture<?> _future;
+        private boolean _cancelled = false; // guarded by `_lock`
+        private long _lastEndNanos;
+        private volatile long _lagNanos = 0;
+        private volatile long _overruns = 0;
+
+        private Registration(Object lock, Supplier<Runnable> tick, int periodMillis) {
+            this._lock = lock;
+            this._tick = tick;
+            this._periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            this._lastEndNanos = System.nanoTime();
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            Runnable tick = this._tick.get();
+            synchronized (this._lock) {
+                if (this._cancelled) return;
+                this._lagNanos = Math.max(0, start - this._lastEndNanos - this._periodNanos);
+                try {
+                    tick.run();
+                } finally {
+                    this._lastEndNanos = System.nanoTime();
+                    if ((this._lastEndNanos - start) > this._periodNanos) {
+                        ++this._overruns;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Cancels this registration. Has to be called while holding the lock that was passed to `schedule`.
+         */
+        void cancel() {
+            this._cancelled = true;
+            this._future.cancel(false);
+        }
+
+        /**
+         * @return How many nanoseconds the last tick started later than planned
+         */
+        long lagNanos() {
+            return this._lagNanos;
+        }
+
+        /**
+         * @return The number of ticks that took longer than the period and thus delayed the following ticks
+         */
+        long overruns() {
+            return this._overruns;
+        }
+    }
+}
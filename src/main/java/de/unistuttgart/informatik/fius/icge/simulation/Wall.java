@@ -27,6 +27,17 @@ public class Wall extends Entity {
         public boolean isSolid() {
             return true;
         }
+
+        @Override
+        public boolean equals(Object obj) {
+            // wall states don't have any data, so they are interchangeable
+            return (obj != null) && (obj.getClass() == this.getClass());
+        }
+
+        @Override
+        public int hashCode() {
+            return this.getClass().hashCode();
+        }
     }
 
     /**
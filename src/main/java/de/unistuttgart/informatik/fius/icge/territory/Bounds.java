@@ -0,0 +1,75 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+/**
+ * An immutable rectangle of cells. Both the minimum and the maximum column and row are part of the rectangle.
+ */
+public class Bounds {
+
+    public final int minColumn;
+    public final int minRow;
+    public final int maxColumn;
+    public final int maxRow;
+
+    /**
+     * Creates a new rectangle of cells
+     *
+     * @param minColumn
+     *            The first column
+     * @param minRow
+     *            The first row
+     * @param maxColumn
+     *            The last column
+     * @param maxRow
+     *            The last row
+     */
+    public Bounds(int minColumn, int minRow, int maxColumn, int maxRow) {
+        if ((minColumn > maxColumn) || (minRow > maxRow)) throw new IllegalArgumentException();
+        this.minColumn = minColumn;
+        this.minRow = minRow;
+        this.maxColumn = maxColumn;
+        this.maxRow = maxRow;
+    }
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return true iff the specified cell is within this rectangle
+     */
+    public boolean contains(int column, int row) {
+        return (column >= this.minColumn) && (column <= this.maxColumn) && (row >= this.minRow) && (row <= this.maxRow);
+    }
+
+    /**
+     * @param other
+     *            Another rectangle, may be `null`
+     * @return The smallest rectangle that contains both this and the other rectangle
+     */
+    public Bounds union(Bounds other) {
+        if (other == null) return this;
+        return new Bounds(Math.min(this.minColumn, other.minColumn), Math.min(this.minRow, other.minRow),
+                Math.max(this.maxColumn, other.maxColumn), Math.max(this.maxRow, other.maxRow));
+    }
+
+    /**
+     * @return The column in the middle of this rectangle
+     */
+    public double centerColumn() {
+        return 0.5 * ((double) this.minColumn + this.maxColumn);
+    }
+
+    /**
+     * @return The row in the middle of this rectangle
+     */
+    public double centerRow() {
+        return 0.5 * ((double) this.minRow + this.maxRow);
+    }
+}
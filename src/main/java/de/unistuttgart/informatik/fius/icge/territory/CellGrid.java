@@ -0,0 +1,303 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A persistent (immutable) sparse grid that maps cells to the `WorldObject`s in them.
+ *
+ * The grid is divided into chunks of 32x32 cells that are stored in a hash trie keyed by the chunk coordinates, so the grid
+ * has no bounds and only costs memory for the chunks that are populated. Within a chunk, every row and every cell is an
+ * immutable array and changing a cell copies at most two arrays of 32 references.
+ */
+final class CellGrid {
+
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** The grid without any `WorldObject` */
+    static final CellGrid EMPTY = new CellGrid(LongHashTrie.empty());
+
+    private final LongHashTrie<Chunk> _chunks;
+
+    private CellGrid(LongHashTrie<Chunk> chunks) {
+        this._chunks = chunks;
+    }
+
+    /**
+     * Creates a grid with many `WorldObject`s at once, which sorts them by chunk and cell and builds every chunk only once
+     *
+     * @param wobs
+     *            The `WorldObject`s in the order of the territory, which is kept within each cell
+     * @return The resulting grid
+     */
+    static CellGrid of(WorldObject[] wobs) {
+        WorldObject[] sorted = wobs.clone();
+        Arrays.sort(sorted, CellGrid::compareByChunkAndCell); // stable
+        LongHashTrie<Chunk> chunks = LongHashTrie.empty();
+        int start = 0;
+        while (start < sorted.length) {
+            int chunkCol = sorted[start].column >> CHUNK_BITS;
+            int chunkRow = sorted[start].row >> CHUNK_BITS;
+            WorldObject[][][] rows = new WorldObject[CHUNK_SIZE][][];
+            int occupied = 0;
+            int end = start;
+            while ((end < sorted.length) && ((sorted[end].column >> CHUNK_BITS) == chunkCol)
+                    && ((sorted[end].row >> CHUNK_BITS) == chunkRow)) {
+                WorldObject first = sorted[end];
+                int cellEnd = end + 1;
+                while ((cellEnd < sorted.length) && (sorted[cellEnd].column == first.column)
+                        && (sorted[cellEnd].row == first.row)) {
+                    ++cellEnd;
+                }
+                WorldObject[][] row = rows[first.row & CHUNK_MASK];
+                if (row == null) {
+                    row = new WorldObject[CHUNK_SIZE][];
+                    rows[first.row & CHUNK_MASK] = row;
+                }
+                row[first.column & CHUNK_MASK] = Arrays.copyOfRange(sorted, end, cellEnd);
+                ++occupied;
+                end = cellEnd;
+            }
+            chunks = chunks.put(chunkKey(chunkCol, chunkRow), new Chunk(rows, occupied, end - start));
+            start = end;
+        }
+        return new CellGrid(chunks);
+    }
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return The `WorldObject`s in the specified cell or `null` if there are none
+     */
+    WorldObject[] get(int column, int row) {
+        Chunk chunk = this._chunks.get(chunkKey(column >> CHUNK_BITS, row >> CHUNK_BITS));
+        if (chunk == null) return null;
+        WorldObject[][] chunkRow = chunk.rows[row & CHUNK_MASK];
+        return chunkRow == null ? null : chunkRow[column & CHUNK_MASK];
+    }
+
+    /**
+     * Sets the `WorldObject`s of a cell
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @param cell
+     *            The new `WorldObject`s of the cell. `null` means that the cell becomes empty. The array must not be modified
+     *            afterwards.
+     * @return The resulting grid
+     */
+    CellGrid put(int column, int row, WorldObject[] cell) {
+        long key = chunkKey(column >> CHUNK_BITS, row >> CHUNK_BITS);
+        Chunk old = this._chunks.get(key);
+        Chunk chunk = (old == null ? Chunk.EMPTY : old).with(column & CHUNK_MASK, row & CHUNK_MASK, cell);
+        if (chunk == old) return this;
+        return new CellGrid(this._chunks.put(key, chunk.occupied == 0 ? null : chunk));
+    }
+
+    /**
+     * Calls a consumer for every `WorldObject` in a rectangular region. Only the chunks that intersect the region are looked at.
+     *
+     * @param minColumn
+     *            The first column of the region
+     * @param minRow
+     *            The first row of the region
+     * @param maxColumn
+     *            The last column of the region
+     * @param maxRow
+     *            The last row of the region
+     * @param consumer
+     *            The consumer to call
+     */
+    void forEachIn(int minColumn, int minRow, int maxColumn, int maxRow, Consumer<WorldObject> consumer) {
+        this.forEachChunkIn(minColumn, minRow, maxColumn, maxRow, (chunkCol, chunkRow, chunk) -> chunk.forEachIn(chunkCol,
+                chunkRow, minColumn, minRow, maxColumn, maxRow, consumer));
+    }
+
+    /**
+     * Counts the `WorldObject`s in a rectangular region. Chunks that are completely covered by the region aren't looked into.
+     *
+     * @param minColumn
+     *            The first column of the region
+     * @param minRow
+     *            The first row of the region
+     * @param maxColumn
+     *            The last column of the region
+     * @param maxRow
+     *            The last row of the region
+     * @return The number of `WorldObject`s in the region
+     */
+    int countIn(int minColumn, int minRow, int maxColumn, int maxRow) {
+        int[] count = new int[1];
+        this.forEachChunkIn(minColumn, minRow, maxColumn, maxRow, (chunkCol, chunkRow, chunk) -> {
+            int baseCol = chunkCol << CHUNK_BITS;
+            int baseRow = chunkRow << CHUNK_BITS;
+            if ((minColumn <= baseCol) && (minRow <= baseRow) && (maxColumn >= (baseCol + CHUNK_MASK))
+                    && (maxRow >= (baseRow + CHUNK_MASK))) {
+                count[0] += chunk.size;
+            } else {
+                chunk.forEachIn(chunkCol, chunkRow, minColumn, minRow, maxColumn, maxRow, wob -> ++count[0]);
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * @return The smallest rectangle that contains all non-empty cells or `null` if the grid is empty
+     */
+    Bounds bounds() {
+        Bounds[] result = new Bounds[1];
+        this._chunks.forEach((key, chunk) -> result[0] = chunk.bounds((int) (key >> 32), (int) key).union(result[0]));
+        return result[0];
+    }
+
+    // private
+
+    private void forEachChunkIn(int minColumn, int minRow, int maxColumn, int maxRow, ChunkConsumer consumer) {
+        if ((minColumn > maxColumn) || (minRow > maxRow)) return;
+        int minChunkCol = minColumn >> CHUNK_BITS;
+        int minChunkRow = minRow >> CHUNK_BITS;
+        int maxChunkCol = maxColumn >> CHUNK_BITS;
+        int maxChunkRow = maxRow >> CHUNK_BITS;
+        long chunksInRegion = ((long) maxChunkCol - minChunkCol + 1) * ((long) maxChunkRow - minChunkRow + 1);
+        if (chunksInRegion <= this._chunks.size()) {
+            for (int chunkRow = minChunkRow; chunkRow <= maxChunkRow; ++chunkRow) {
+                for (int chunkCol = minChunkCol; chunkCol <= maxChunkCol; ++chunkCol) {
+                    Chunk chunk = this._chunks.get(chunkKey(chunkCol, chunkRow));
+                    if (chunk != null) {
+                        consumer.accept(chunkCol, chunkRow, chunk);
+                    }
+                }
+            }
+        } else {
+            // the region is larger than the populated part of the grid
+            this._chunks.forEach((key, chunk) -> {
+                int chunkCol = (int) (key >> 32);
+                int chunkRow = (int) key;
+                if ((chunkCol >= minChunkCol) && (chunkCol <= maxChunkCol) && (chunkRow >= minChunkRow)
+                        && (chunkRow <= maxChunkRow)) {
+                    consumer.accept(chunkCol, chunkRow, chunk);
+                }
+            });
+        }
+    }
+
+    private static int compareByChunkAndCell(WorldObject a, WorldObject b) {
+        int result = Integer.compare(a.row >> CHUNK_BITS, b.row >> CHUNK_BITS);
+        if (result == 0) {
+            result = Integer.compare(a.column >> CHUNK_BITS, b.column >> CHUNK_BITS);
+        }
+        if (result == 0) {
+            result = Integer.compare(a.row, b.row);
+        }
+        if (result == 0) {
+            result = Integer.compare(a.column, b.column);
+        }
+        return result;
+    }
+
+    private static long chunkKey(int chunkCol, int chunkRow) {
+        return ((long) chunkCol << 32) | (chunkRow & 0xffffffffL);
+    }
+
+    @FunctionalInterface
+    private interface ChunkConsumer {
+        void accept(int chunkCol, int chunkRow, Chunk chunk);
+    }
+
+    private static final class Chunk {
+        static final Chunk EMPTY = new Chunk(new WorldObject[CHUNK_SIZE][][], 0, 0);
+
+        /** The rows of this chunk where `null` is an empty row */
+        final WorldObject[][][] rows;
+        /** The number of non-empty cells */
+        final int occupied;
+        /** The number of `WorldObject`s */
+        final int size;
+        /** The bounds relative to the chunk, computed on demand */
+        private Bounds _bounds;
+
+        Chunk(WorldObject[][][] rows, int occupied, int size) {
+            this.rows = rows;
+            this.occupied = occupied;
+            this.size = size;
+        }
+
+        Chunk with(int column, int row, WorldObject[] cell) {
+            WorldObject[][] oldRow = this.rows[row];
+            WorldObject[] oldCell = oldRow == null ? null : oldRow[column];
+            if (oldCell == cell) return this;
+            WorldObject[][] newRow = oldRow == null ? new WorldObject[CHUNK_SIZE][] : oldRow.clone();
+            newRow[column] = cell;
+            WorldObject[][][] rows = this.rows.clone();
+            rows[row] = isEmpty(newRow) ? null : newRow;
+            int occupied = this.occupied + (cell == null ? 0 : 1) - (oldCell == null ? 0 : 1);
+            int size = (this.size + (cell == null ? 0 : cell.length)) - (oldCell == null ? 0 : oldCell.length);
+            return new Chunk(rows, occupied, size);
+        }
+
+        Bounds bounds(int chunkCol, int chunkRow) {
+            if (this._bounds == null) {
+                // racy but benign: the result is always the same
+                int minCol = CHUNK_MASK, minRow = CHUNK_MASK, maxCol = 0, maxRow = 0;
+                for (int row = 0; row < CHUNK_SIZE; ++row) {
+                    WorldObject[][] cells = this.rows[row];
+                    if (cells == null) continue;
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                    for (int col = 0; col < CHUNK_SIZE; ++col) {
+                        if (cells[col] != null) {
+                            minCol = Math.min(minCol, col);
+                            maxCol = Math.max(maxCol, col);
+                        }
+                    }
+                }
+                this._bounds = new Bounds(minCol, minRow, maxCol, maxRow);
+            }
+            int baseCol = chunkCol << CHUNK_BITS;
+            int baseRow = chunkRow << CHUNK_BITS;
+            return new Bounds(baseCol + this._bounds.minColumn, baseRow + this._bounds.minRow, baseCol + this._bounds.maxColumn,
+                    baseRow + this._bounds.maxRow);
+        }
+
+        void forEachIn(int chunkCol, int chunkRow, int minColumn, int minRow, int maxColumn, int maxRow,
+                Consumer<WorldObject> consumer) {
+            int baseCol = chunkCol << CHUNK_BITS;
+            int baseRow = chunkRow << CHUNK_BITS;
+            int fromRow = (int) Math.max((long) minRow - baseRow, 0);
+            int toRow = (int) Math.min((long) maxRow - baseRow, CHUNK_MASK);
+            int fromCol = (int) Math.max((long) minColumn - baseCol, 0);
+            int toCol = (int) Math.min((long) maxColumn - baseCol, CHUNK_MASK);
+            for (int row = fromRow; row <= toRow; ++row) {
+                WorldObject[][] cells = this.rows[row];
+                if (cells == null) continue;
+                for (int col = fromCol; col <= toCol; ++col) {
+                    WorldObject[] cell = cells[col];
+                    if (cell == null) continue;
+                    for (WorldObject wob : cell) {
+                        consumer.accept(wob);
+                    }
+                }
+            }
+        }
+
+        private static boolean isEmpty(WorldObject[][] row) {
+            for (WorldObject[] cell : row) {
+                if (cell != null) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -12,11 +12,13 @@ import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
 /**
  * A class to create a territory
  * 
+ * The changes are collected in a `Territory.Builder`, so adding many `WorldObject`s only builds the territory once.
+ * 
  * @author hsalersn
  */
 public class Editor {
 
-    private Territory _tty;
+    private final Territory.Builder _builder;
 
     /**
      * Create a editor from the given inital territory
@@ -25,18 +27,18 @@ public class Editor {
      *            The initial territory
      */
     public Editor(Territory tty) {
-        this._tty = tty;
+        this._builder = new Territory.Builder(tty);
     }
 
     /**
      * @return The resulting territory
      */
     public Territory result() {
-        return this._tty;
+        return this._builder.result();
     }
 
     public void add(WorldObject wob) {
-        this._tty = this._tty.add(wob);
+        this._builder.add(wob);
     }
 
     public void add(EntityState state, int column, int row, Direction direction) {
@@ -48,18 +50,18 @@ public class Editor {
     }
 
     public void clear() {
-        this._tty = new Territory();
+        this._builder.clear();
     }
 
     public void clear(int column, int row) {
-        this._tty = this._tty.removeIf(wob -> (wob.column == column) && (wob.row == row));
+        this._builder.removeAt(column, row);
     }
 
     public void clear(Class<? extends EntityState> cls) {
-        this._tty = this._tty.removeIf(wob -> wob.state.getClass() == cls);
+        this._builder.removeIf(wob -> wob.state.getClass() == cls);
     }
 
     public void clear(Class<? extends EntityState> cls, int column, int row) {
-        this._tty = this._tty.removeIf(wob -> (wob.state.getClass() == cls) && (wob.column == column) && (wob.row == row));
+        this._builder.removeAt(column, row, wob -> wob.state.getClass() == cls);
     }
 }
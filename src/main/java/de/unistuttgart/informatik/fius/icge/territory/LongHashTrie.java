@@ -0,0 +1,257 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+/**
+ * A persistent (immutable) hash array mapped trie with `long` keys.
+ *
+ * Every mutation returns a new trie that shares all untouched nodes with the old one. Since the used hash function is a
+ * bijection on `long`, two different keys never have the same hash and no collision nodes are necessary. Lookups and mutations
+ * touch at most 13 nodes, usually much less.
+ *
+ * @param <V>
+ *            The type of the values
+ */
+final class LongHashTrie<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final LongHashTrie<?> EMPTY = new LongHashTrie<>(null, 0);
+
+    private final Node _root;
+    private final int _size;
+
+    private LongHashTrie(Node root, int size) {
+        this._root = root;
+        this._size = size;
+    }
+
+    /**
+     * @return The empty trie
+     */
+    @SuppressWarnings("unchecked")
+    static <V> LongHashTrie<V> empty() {
+        return (LongHashTrie<V>) EMPTY;
+    }
+
+    /**
+     * @return The number of keys in this trie
+     */
+    int size() {
+        return this._size;
+    }
+
+    /**
+     * @param key
+     *            The key to look up
+     * @return The value associated with the key or `null` if there is none
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        long hash = hash(key);
+        Node node = this._root;
+        int shift = 0;
+        while (node != null) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) return null;
+            Object entry = node.entries[index(node.bitmap, bit)];
+            if (entry instanceof Leaf) {
+                Leaf leaf = (Leaf) entry;
+                return leaf.key == key ? (V) leaf.value : null;
+            }
+            node = (Node) entry;
+            shift += BITS;
+        }
+        return null;
+    }
+
+    /**
+     * Associates a value with a key. If `value` is `null`, the key is removed instead.
+     *
+     * @param key
+     *            The key
+     * @param value
+     *            The value
+     * @return The resulting trie, which is `this` if nothing changed
+     */
+    LongHashTrie<V> put(long key, V value) {
+        if (value == null) return this.remove(key);
+        boolean[] added = new boolean[1];
+        Node root = put(this._root, hash(key), 0, new Leaf(key, value), added);
+        if (root == this._root) return this;
+        return new LongHashTrie<>(root, added[0] ? this._size + 1 : this._size);
+    }
+
+    /**
+     * Removes a key
+     *
+     * @param key
+     *            The key to remove
+     * @return The resulting trie, which is `this` if the key wasn't contained
+     */
+    LongHashTrie<V> remove(long key) {
+        if (this._root == null) return this;
+        Object root = remove(this._root, hash(key), 0, key);
+        if (root == this._root) return this;
+        if (root instanceof Leaf) {
+            // the root always has to be a node
+            Leaf leaf = (Leaf) root;
+            root = new Node(bit(hash(leaf.key), 0), new Object[] { leaf });
+        }
+        return new LongHashTrie<>((Node) root, this._size - 1);
+    }
+
+    /**
+     * Calls a consumer for every key value pair in unspecified order
+     *
+     * @param consumer
+     *            The consumer to call
+     */
+    void forEach(EntryConsumer<? super V> consumer) {
+        if (this._root != null) {
+            forEach(this._root, consumer);
+        }
+    }
+
+    /**
+     * A consumer of key value pairs
+     *
+     * @param <V>
+     *            The type of the values
+     */
+    @FunctionalInterface
+    interface EntryConsumer<V> {
+        /**
+         * @param key
+         *            The key
+         * @param value
+         *            The value
+         */
+        void accept(long key, V value);
+    }
+
+    // private
+
+    private static long hash(long key) {
+        // murmur3 finalizer, which is a bijection
+        long h = key;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static int bit(long hash, int shift) {
+        return 1 << ((int) (hash >>> shift) & MASK);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static Node put(Node node, long hash, int shift, Leaf leaf, boolean[] added) {
+        if (node == null) {
+            added[0] = true;
+            return new Node(bit(hash, shift), new Object[] { leaf });
+        }
+        int bit = bit(hash, shift);
+        int index = index(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] entries = new Object[node.entries.length + 1];
+            System.arraycopy(node.entries, 0, entries, 0, index);
+            entries[index] = leaf;
+            System.arraycopy(node.entries, index, entries, index + 1, node.entries.length - index);
+            return new Node(node.bitmap | bit, entries);
+        }
+        Object entry = node.entries[index];
+        Object newEntry;
+        if (entry instanceof Leaf) {
+            Leaf old = (Leaf) entry;
+            if (old.key == leaf.key) {
+                if (old.value == leaf.value) return node;
+                newEntry = leaf;
+            } else {
+                added[0] = true;
+                newEntry = put(put(null, hash(old.key), shift + BITS, old, new boolean[1]), hash, shift + BITS, leaf,
+                        new boolean[1]);
+            }
+        } else {
+            newEntry = put((Node) entry, hash, shift + BITS, leaf, added);
+            if (newEntry == entry) return node;
+        }
+        Object[] entries = node.entries.clone();
+        entries[index] = newEntry;
+        return new Node(node.bitmap, entries);
+    }
+
+    /**
+     * @return The resulting node, a single leaf if the node would only contain that leaf or `null` if the node would be empty
+     */
+    private static Object remove(Node node, long hash, int shift, long key) {
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) return node;
+        int index = index(node.bitmap, bit);
+        Object entry = node.entries[index];
+        Object newEntry;
+        if (entry instanceof Leaf) {
+            if (((Leaf) entry).key != key) return node;
+            newEntry = null;
+        } else {
+            newEntry = remove((Node) entry, hash, shift + BITS, key);
+            if (newEntry == entry) return node;
+        }
+        if (newEntry == null) {
+            if (node.entries.length == 1) return null;
+            if ((node.entries.length == 2) && (node.entries[1 - index] instanceof Leaf)) return node.entries[1 - index];
+            Object[] entries = new Object[node.entries.length - 1];
+            System.arraycopy(node.entries, 0, entries, 0, index);
+            System.arraycopy(node.entries, index + 1, entries, index, entries.length - index);
+            return new Node(node.bitmap & ~bit, entries);
+        }
+        if ((node.entries.length == 1) && (newEntry instanceof Leaf)) return newEntry;
+        Object[] entries = node.entries.clone();
+        entries[index] = newEntry;
+        return new Node(node.bitmap, entries);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, EntryConsumer<? super V> consumer) {
+        for (Object entry : node.entries) {
+            if (entry instanceof Leaf) {
+                Leaf leaf = (Leaf) entry;
+                consumer.accept(leaf.key, (V) leaf.value);
+            } else {
+                forEach((Node) entry, consumer);
+            }
+        }
+    }
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] entries;
+
+        Node(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+    }
+
+    private static final class Leaf {
+        final long key;
+        final Object value;
+
+        Leaf(long key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * An immutable, compact representation of a territory that stores its `WorldObject`s column-wise in primitive arrays.
+ *
+ * This is meant for large territories that are mostly read, e.g. when grading: a `WorldObject` costs 15 bytes plus 4 bytes for
+ * the cell index instead of a separate heap object, and scans walk through arrays sequentially. Equal `EntityState`s are
+ * interned in a table and only referenced by an id, which takes 16 bits as long as there are at most 65536 distinct
+ * `EntityState`s and 32 bits otherwise.
+ *
+ * NOTE: The `WorldObject`s returned by the queries are created on demand. Hence they have the same values as the
+ * `WorldObject`s this `PackedTerritory` was created from, but they aren't the same objects.
+ */
+public final class PackedTerritory implements ReadableTerritory {
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final int _size;
+    private final int[] _columns;
+    private final int[] _rows;
+    private final float[] _zs;
+    private final byte[] _directions;
+    /** The ids of the states if there are at most 65536 distinct states, `null` otherwise */
+    private final short[] _shortStateIds;
+    /** The ids of the states if there are more than 65536 distinct states, `null` otherwise */
+    private final int[] _stateIds;
+    private final EntityState[] _states;
+    private final boolean[] _solidStates;
+    /** The indexes of all `WorldObject`s sorted by row, column and index */
+    private final int[] _byCell;
+    private final Bounds _bounds;
+
+    /**
+     * Creates a packed copy of a territory
+     *
+     * @param tty
+     *            The territory to copy
+     */
+    public PackedTerritory(ReadableTerritory tty) {
+        this._size = tty.size();
+        this._columns = new int[this._size];
+        this._rows = new int[this._size];
+        this._zs = new float[this._size];
+        this._directions = new byte[this._size];
+
+        int[] ids = new int[this._size];
+        HashMap<EntityState, Integer> stateIds = new HashMap<>();
+        ArrayList<EntityState> states = new ArrayList<>();
+        int[] index = new int[1];
+        tty.forEach(wob -> {
+            int i = index[0]++;
+            Integer stateId = stateIds.get(wob.state);
+            if (stateId == null) {
+                stateId = states.size();
+                stateIds.put(wob.state, stateId);
+                states.add(wob.state);
+            }
+            this._columns[i] = wob.column;
+            this._rows[i] = wob.row;
+            this._zs[i] = wob.z;
+            this._directions[i] = (byte) wob.direction.ordinal();
+            ids[i] = stateId;
+        });
+        if (states.size() <= 0x10000) {
+            this._shortStateIds = new short[this._size];
+            for (int i = 0; i < this._size; ++i) {
+                this._shortStateIds[i] = (short) ids[i];
+            }
+            this._stateIds = null;
+        } else {
+            this._shortStateIds = null;
+            this._stateIds = ids;
+        }
+
+        this._states = states.toArray(new EntityState[states.size()]);
+        this._solidStates = new boolean[this._states.length];
+        for (int i = 0; i < this._states.length; ++i) {
+            this._solidStates[i] = this._states[i].isSolid();
+        }
+        this._byCell = this.sortByCell();
+        this._bounds = tty.bounds();
+    }
+
+    /**
+     * @return A `Territory` containing the `WorldObject`s of this `PackedTerritory`
+     */
+    public Territory unpack() {
+        Territory.Builder builder = new Territory.Builder();
+        for (int i = 0; i < this._size; ++i) {
+            builder.add(this.worldObject(i));
+        }
+        return builder.result();
+    }
+
+    @Override
+    public int size() {
+        return this._size;
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjects() {
+        return this.worldObjectsWith(wob -> true);
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjectsWith(Predicate<WorldObject> pred) {
+        ArrayList<WorldObject> result = new ArrayList<>();
+        this.forEach(wob -> {
+            if (pred.test(wob)) {
+                result.add(wob);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjectsAt(int column, int row) {
+        ArrayList<WorldObject> result = new ArrayList<>();
+        for (int i = this.firstAt(column, row); this.isAt(i, column, row); ++i) {
+            result.add(this.worldObject(this._byCell[i]));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean containsWith(Predicate<WorldObject> pred) {
+        for (int i = 0; i < this._size; ++i) {
+            if (pred.test(this.worldObject(i))) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAt(int column, int row) {
+        return this.isAt(this.firstAt(column, row), column, row);
+    }
+
+    @Override
+    public boolean containsAt(int column, int row, Predicate<WorldObject> pred) {
+        for (int i = this.firstAt(column, row); this.isAt(i, column, row); ++i) {
+            if (pred.test(this.worldObject(this._byCell[i]))) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isSolidAt(int column, int row) {
+        for (int i = this.firstAt(column, row); this.isAt(i, column, row); ++i) {
+            if (this._solidStates[this.stateId(this._byCell[i])]) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEach(Consumer<WorldObject> consumer) {
+        for (int i = 0; i < this._size; ++i) {
+            consumer.accept(this.worldObject(i));
+        }
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjectsIn(int minColumn, int minRow, int maxColumn, int maxRow) {
+        int[][] indexes = { new int[16] };
+        int[] count = new int[1];
+        this.forEachIndexIn(minColumn, minRow, maxColumn, maxRow, i -> {
+            if (count[0] == indexes[0].length) {
+                indexes[0] = Arrays.copyOf(indexes[0], 2 * count[0]);
+            }
+            indexes[0][count[0]++] = i;
+        });
+        Arrays.sort(indexes[0], 0, count[0]); // the indexes are in the order of the territory
+        ArrayList<WorldObject> result = new ArrayList<>(count[0]);
+        for (int i = 0; i < count[0]; ++i) {
+            result.add(this.worldObject(indexes[0][i]));
+        }
+        return result;
+    }
+
+    @Override
+    public int countIn(int minColumn, int minRow, int maxColumn, int maxRow) {
+        int[] count = new int[1];
+        this.forEachIndexIn(minColumn, minRow, maxColumn, maxRow, i -> ++count[0]);
+        return count[0];
+    }
+
+    @Override
+    public void forEachIn(int minColumn, int minRow, int maxColumn, int maxRow, Consumer<WorldObject> consumer) {
+        this.forEachIndexIn(minColumn, minRow, maxColumn, maxRow, i -> consumer.accept(this.worldObject(i)));
+    }
+
+    @Override
+    public Bounds bounds() {
+        return this._bounds;
+    }
+
+    // private
+
+    /**
+     * Calls a consumer for the index of every `WorldObject` in a rectangular region. This walks through `_byCell` from the
+     * first cell of the region and skips the parts of the populated rows that are outside of it by a binary search, so it costs
+     * O((k + r) log n) for k `WorldObject`s in r populated rows of the region.
+     */
+    private void forEachIndexIn(int minColumn, int minRow, int maxColumn, int maxRow, IntConsumer consumer) {
+        if ((minColumn > maxColumn) || (minRow > maxRow)) return;
+        int position = this.firstAt(minColumn, minRow, 0);
+        while (position < this._size) {
+            int index = this._byCell[position];
+            int row = this._rows[index];
+            int column = this._columns[index];
+            if (row > maxRow) return;
+            if (column < minColumn) {
+                position = this.firstAt(minColumn, row, position);
+            } else if (column > maxColumn) {
+                if (row == Integer.MAX_VALUE) return;
+                position = this.firstAt(minColumn, row + 1, position); // the next populated row
+            } else {
+                consumer.accept(index);
+                ++position;
+            }
+        }
+    }
+
+    private int stateId(int i) {
+        return this._shortStateIds != null ? this._shortStateIds[i] & 0xffff : this._stateIds[i];
+    }
+
+    private WorldObject worldObject(int i) {
+        return new WorldObject(this._states[this.stateId(i)], this._columns[i], this._rows[i], this._zs[i],
+                DIRECTIONS[this._directions[i]]);
+    }
+
+    private int compareCell(int i, int column, int row) {
+        int result = Integer.compare(this._rows[i], row);
+        return result != 0 ? result : Integer.compare(this._columns[i], column);
+    }
+
+    /**
+     * @return The position in `_byCell` of the first `WorldObject` in the specified cell or of the first `WorldObject` after
+     *         it, if the cell is empty
+     */
+    private int firstAt(int column, int row) {
+        return this.firstAt(column, row, 0);
+    }
+
+    /**
+     * @return The same as `firstAt(column, row)`, but only searches from a position on
+     */
+    private int firstAt(int column, int row, int from) {
+        int low = from;
+        int high = this._size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.compareCell(this._byCell[mid], column, row) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean isAt(int position, int column, int row) {
+        return (position < this._size) && (this.compareCell(this._byCell[position], column, row) == 0);
+    }
+
+    private int[] sortByCell() {
+        // merge sort on primitive indexes, which is stable such that each cell keeps the order of the territory
+        int[] result = new int[this._size];
+        for (int i = 0; i < this._size; ++i) {
+            result[i] = i;
+        }
+        int[] buffer = new int[this._size];
+        for (int width = 1; width < this._size; width *= 2) {
+            for (int low = 0; low < this._size; low += 2 * width) {
+                int mid = Math.min(low + width, this._size);
+                int high = Math.min(low + (2 * width), this._size);
+                int left = low;
+                int right = mid;
+                for (int out = low; out < high; ++out) {
+                    if ((right >= high) || ((left < mid)
+                            && (this.compareCell(result[left], this._columns[result[right]], this._rows[result[right]]) <= 0))) {
+                        buffer[out] = result[left++];
+                    } else {
+                        buffer[out] = result[right++];
+                    }
+                }
+            }
+            int[] swap = result;
+            result = buffer;
+            buffer = swap;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The queries that can be answered by every representation of a territory.
+ *
+ * All methods that return multiple `WorldObject`s return them ordered by `WorldObject.compareTo()`.
+ */
+public interface ReadableTerritory {
+
+    /**
+     * @return The number of `WorldObject`s
+     */
+    public int size();
+
+    /**
+     * @return true iff there is no `WorldObject`
+     */
+    public default boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * @return All `WorldObject`s
+     */
+    public ArrayList<WorldObject> worldObjects();
+
+    /**
+     * @param pred
+     *            The predicate that the `WorldObject`s are tested for
+     * @return All `WorldObject`s that match the predicate
+     */
+    public ArrayList<WorldObject> worldObjectsWith(Predicate<WorldObject> pred);
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return All `WorldObject`s in the specified cell
+     */
+    public ArrayList<WorldObject> worldObjectsAt(int column, int row);
+
+    /**
+     * @param pred
+     *            The predicate that the `WorldObject`s are tested for
+     * @return true iff at least one `WorldObject` matches the predicate
+     */
+    public boolean containsWith(Predicate<WorldObject> pred);
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return true iff the specified cell contains at least one `WorldObject`
+     */
+    public boolean containsAt(int column, int row);
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @param pred
+     *            The predicate that the `WorldObject`s are tested for
+     * @return true iff the specified cell contains at least one `WorldObject` that matches the predicate
+     */
+    public boolean containsAt(int column, int row, Predicate<WorldObject> pred);
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return true iff the specified cell contains at least one `WorldObject` whose state is solid
+     */
+    public boolean isSolidAt(int column, int row);
+
+    /**
+     * Calls a consumer for every `WorldObject`
+     *
+     * @param consumer
+     *            The consumer to call
+     */
+    public void forEach(Consumer<WorldObject> consumer);
+
+    /**
+     * @param minColumn
+     *            The first column of the region
+     * @param minRow
+     *            The first row of the region
+     * @param maxColumn
+     *            The last column of the region
+     * @param maxRow
+     *            The last row of the region
+     * @return All `WorldObject`s in the specified rectangular region
+     */
+    public ArrayList<WorldObject> worldObjectsIn(int minColumn, int minRow, int maxColumn, int maxRow);
+
+    /**
+     * @param minColumn
+     *            The first column of the region
+     * @param minRow
+     *            The first row of the region
+     * @param maxColumn
+     *            The last column of the region
+     * @param maxRow
+     *            The last row of the region
+     * @return The number of `WorldObject`s in the specified rectangular region
+     */
+    public int countIn(int minColumn, int minRow, int maxColumn, int maxRow);
+
+    /**
+     * Calls a consumer for every `WorldObject` in a rectangular region. As opposed to the other methods, the order is
+     * unspecified.
+     *
+     * @param minColumn
+     *            The first column of the region
+     * @param minRow
+     *            The first row of the region
+     * @param maxColumn
+     *            The last column of the region
+     * @param maxRow
+     *            The last row of the region
+     * @param consumer
+     *            The consumer to call
+     */
+    public void forEachIn(int minColumn, int minRow, int maxColumn, int maxRow, Consumer<WorldObject> consumer);
+
+    /**
+     * @return The smallest rectangle that contains all `WorldObject`s or `null` if there are none
+     */
+    public Bounds bounds();
+}
@@ -0,0 +1,98 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+/**
+ * A persistent (immutable) bitmap that stores which cells are occupied by at least one solid `WorldObject`.
+ *
+ * The grid is divided into chunks of 64x64 cells. Each chunk is a `long[64]` where every `long` represents one row of the chunk,
+ * and only chunks with at least one solid cell are stored. Looking up a cell is a trie lookup followed by a shift and a mask.
+ */
+final class SolidLayer {
+
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    /** The layer without any solid cell */
+    static final SolidLayer EMPTY = new SolidLayer(LongHashTrie.empty());
+
+    private final LongHashTrie<long[]> _chunks;
+
+    private SolidLayer(LongHashTrie<long[]> chunks) {
+        this._chunks = chunks;
+    }
+
+    /**
+     * Creates a layer in which the cells of all solid `WorldObject`s are marked
+     *
+     * @param wobs
+     *            The `WorldObject`s
+     * @return The resulting layer
+     */
+    static SolidLayer of(WorldObject[] wobs) {
+        LongHashTrie<long[]> chunks = LongHashTrie.empty();
+        for (WorldObject wob : wobs) {
+            if (!wob.state.isSolid()) continue;
+            long key = chunkKey(wob.column, wob.row);
+            long[] chunk = chunks.get(key);
+            if (chunk == null) {
+                chunk = new long[1 << CHUNK_BITS];
+                chunks = chunks.put(key, chunk);
+            }
+            // the chunks aren't shared before this method returns, so they can be modified in place
+            chunk[wob.row & CHUNK_MASK] |= 1L << (wob.column & CHUNK_MASK);
+        }
+        return new SolidLayer(chunks);
+    }
+
+    /**
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return true iff the specified cell is marked as solid
+     */
+    boolean isSolid(int column, int row) {
+        long[] chunk = this._chunks.get(chunkKey(column, row));
+        if (chunk == null) return false;
+        return ((chunk[row & CHUNK_MASK] >>> (column & CHUNK_MASK)) & 1L) != 0;
+    }
+
+    /**
+     * Marks a cell as solid or not solid
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @param solid
+     *            Whether the cell should be marked as solid
+     * @return The resulting layer, which is `this` if nothing changed
+     */
+    SolidLayer setSolid(int column, int row, boolean solid) {
+        if (this.isSolid(column, row) == solid) return this;
+        long key = chunkKey(column, row);
+        long[] old = this._chunks.get(key);
+        long[] chunk = old == null ? new long[1 << CHUNK_BITS] : old.clone();
+        chunk[row & CHUNK_MASK] ^= 1L << (column & CHUNK_MASK);
+        return new SolidLayer(this._chunks.put(key, isZero(chunk) ? null : chunk));
+    }
+
+    // private
+
+    private static long chunkKey(int column, int row) {
+        return ((long) (column >> CHUNK_BITS) << 32) | ((row >> CHUNK_BITS) & 0xffffffffL);
+    }
+
+    private static boolean isZero(long[] chunk) {
+        for (long bits : chunk) {
+            if (bits != 0) return false;
+        }
+        return true;
+    }
+}
@@ -1,95 +1,526 @@
-/*
- * This source file is part of the FIUS ICGE project.
- * For more information see github.com/neumantm/ICGE
- *
- * Copyright (c) 2018 the ICGE project authors.
- */
-
-package de.unistuttgart.informatik.fius.icge.territory;
-
-import java.util.ArrayList;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
-
-public class Territory {
-
-    private ArrayList<WorldObject> _worldObjects = new ArrayList<>();
-
-    public Territory() {}
-
-    public Territory(Territory other) {
-        this._worldObjects = new ArrayList<>(other._worldObjects);
-        this._worldObjects.sort((wo1, wo2) -> wo1.compareTo(wo2));
-    }
-
-    public Territory add(WorldObject wob) {
-        Territory result = new Territory(this);
-        result._worldObjects.add(wob);
-        result._worldObjects.sort((wo1, wo2) -> wo1.compareTo(wo2));
-        return result;
-    }
-
-    public Territory replace(WorldObject oldWob, WorldObject newWob) {
-        if (newWob == null) {
-            System.out.println();
-        }
-        int index = this._worldObjects.indexOf(oldWob);
-        if (index == -1) throw new IllegalArgumentException();
-        Territory result = new Territory(this);
-        result._worldObjects.set(index, newWob);
-        result._worldObjects.sort((wo1, wo2) -> wo1.compareTo(wo2));
-        return result;
-    }
-
-    public Territory remove(WorldObject wob) {
-        Territory result = new Territory(this);
-        if (!result._worldObjects.remove(wob)) throw new IllegalArgumentException();
-        result._worldObjects.sort((wo1, wo2) -> wo1.compareTo(wo2));
-        return result;
-    }
-
-    public Territory removeIf(Predicate<WorldObject> pred) {
-        Territory result = new Territory(this);
-        result._worldObjects.removeIf(pred);
-        result._worldObjects.sort((wo1, wo2) -> wo1.compareTo(wo2));
-        return result._worldObjects.size() == this._worldObjects.size() ? this : result; // return this if nothing changed
-    }
-
-    public Territory removeAt(int column, int row) {
-        return this.removeIf(WorldObject.predicateIsAt(column, row));
-    }
-
-    public ArrayList<WorldObject> worldObjects() {
-        return new ArrayList<>(this._worldObjects); // intentionally copy in order to prohibit write access
-    }
-
-    public ArrayList<WorldObject> worldObjectsWith(Predicate<WorldObject> pred) {
-        ArrayList<WorldObject> result = new ArrayList<>();
-        this._worldObjects.forEach(wob -> {
-            if (pred.test(wob)) {
-                result.add(wob);
-            }
-        });
-        return result;
-    }
-
-    public ArrayList<WorldObject> worldObjectsAt(int column, int row) {
-        return this.worldObjectsWith(WorldObject.predicateIsAt(column, row));
-    }
-
-    public boolean contains(WorldObject wob) {
-        return this._worldObjects.contains(wob);
-    }
-
-    public boolean containsWith(Predicate<WorldObject> pred) {
-        return this._worldObjects.stream().filter(pred).findFirst().isPresent();
-    }
-
-    public boolean containsAt(int column, int row) {
-        return this._worldObjects.stream().filter(WorldObject.predicateIsAt(column, row)).findFirst().isPresent();
-    }
-
-    public void forEach(Consumer<WorldObject> consumer) {
-        this._worldObjects.forEach(consumer);
-    }
-}
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * An immutable set of `WorldObject`s ordered by `WorldObject.compareTo()`.
+ *
+ * All mutating methods return a new `Territory` that structurally shares its unchanged parts with the old one, so they cost
+ * O(log n) instead of copying all `WorldObject`s.
+ *
+ * Besides the ordered set, a `Territory` maintains a sparse grid of chunks that maps cells to the `WorldObject`s in that cell,
+ * such that queries for a single cell don't have to look at all `WorldObject`s, and a bitmap of the cells that contain a solid
+ * `WorldObject`. Since both are chunked, a `Territory` is unbounded and only costs memory for the parts that are populated.
+ *
+ * To create a `Territory` from many `WorldObject`s at once, use a `Territory.Builder`.
+ */
+public class Territory implements ReadableTerritory {
+
+    private static final WorldObject[] EMPTY_CELL = new WorldObject[0];
+    /** A delta that changes more than one in this many `WorldObject`s is applied by rebuilding the `Territory` */
+    private static final int BULK_APPLY_RATIO = 8;
+
+    private final WorldObjectTree _worldObjects;
+    private final CellGrid _cells;
+    private final SolidLayer _solid;
+    private Bounds _bounds; // computed on demand
+
+    public Territory() {
+        this(WorldObjectTree.EMPTY, CellGrid.EMPTY, SolidLayer.EMPTY);
+    }
+
+    public Territory(Territory other) {
+        this(other._worldObjects, other._cells, other._solid);
+    }
+
+    private Territory(WorldObjectTree worldObjects, CellGrid cells, SolidLayer solid) {
+        this._worldObjects = worldObjects;
+        this._cells = cells;
+        this._solid = solid;
+    }
+
+    public Territory add(WorldObject wob) {
+        return this.add(wob, WorldObjectTree.nextSeq());
+    }
+
+    /**
+     * Replaces a `WorldObject` by another one, which is ordered among the `WorldObject`s that compare equal to it as if the old
+     * one had been changed in place, see `WorldObjectTree.replace()`.
+     *
+     * @param oldWob
+     *            The `WorldObject` to replace
+     * @param newWob
+     *            The `WorldObject` to add instead
+     * @return The resulting `Territory`
+     * @throws IllegalArgumentException
+     *             if the old `WorldObject` isn't contained in this `Territory`
+     */
+    public Territory replace(WorldObject oldWob, WorldObject newWob) {
+        WorldObjectTree replaced = this._worldObjects.replace(oldWob, newWob);
+        if (replaced == null) throw new IllegalArgumentException();
+        return this.withRemoved(replaced, oldWob).withAdded(replaced, newWob);
+    }
+
+    public Territory remove(WorldObject wob) {
+        WorldObjectTree removed = this._worldObjects.remove(wob);
+        if (removed == null) throw new IllegalArgumentException();
+        return this.withRemoved(removed, wob);
+    }
+
+    public Territory removeIf(Predicate<WorldObject> pred) {
+        ArrayList<WorldObject> removedWobs = new ArrayList<>();
+        WorldObjectTree result = this._worldObjects.removeIf(wob -> {
+            if (!pred.test(wob)) return false;
+            removedWobs.add(wob);
+            return true;
+        });
+        if (result == this._worldObjects) return this; // return this if nothing changed
+        Territory territory = this;
+        for (WorldObject wob : removedWobs) {
+            territory = territory.withRemoved(result, wob);
+        }
+        return territory;
+    }
+
+    public Territory removeAt(int column, int row) {
+        return this.removeAt(column, row, wob -> true);
+    }
+
+    /**
+     * Removes all `WorldObject`s in a certain cell that match a predicate. Only the `WorldObject`s in that cell are looked at.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @param pred
+     *            The predicate
+     * @return The resulting `Territory`, which is `this` if nothing was removed
+     */
+    public Territory removeAt(int column, int row, Predicate<WorldObject> pred) {
+        Territory result = this;
+        for (WorldObject wob : this.cell(column, row)) {
+            if (pred.test(wob)) {
+                result = result.remove(wob);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Applies a delta to this `Territory`. A small delta is applied change by change, a large one by rebuilding the
+     * `Territory` at once.
+     *
+     * @param delta
+     *            The delta, whose removed and replaced `WorldObject`s have to be contained in this `Territory`
+     * @return The resulting `Territory`
+     * @throws IllegalArgumentException
+     *             if a removed or replaced `WorldObject` isn't contained in this `Territory`
+     */
+    public Territory apply(TerritoryDelta delta) {
+        if ((delta.size() * BULK_APPLY_RATIO) > this.size()) return this.applyInBulk(delta);
+        Territory result = this;
+        for (WorldObject wob : delta.removed()) {
+            result = result.remove(wob);
+        }
+        for (TerritoryDelta.Replacement replacement : delta.replaced()) {
+            result = result.replace(replacement.oldWob, replacement.newWob);
+        }
+        for (WorldObject wob : delta.added()) {
+            result = result.add(wob);
+        }
+        return result;
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjects() {
+        return this._worldObjects.toList(); // intentionally copy in order to prohibit write access
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjectsWith(Predicate<WorldObject> pred) {
+        ArrayList<WorldObject> result = new ArrayList<>();
+        this._worldObjects.forEach(wob -> {
+            if (pred.test(wob)) {
+                result.add(wob);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjectsAt(int column, int row) {
+        WorldObject[] cell = this.cell(column, row);
+        ArrayList<WorldObject> result = new ArrayList<>(cell.length);
+        for (WorldObject wob : cell) {
+            result.add(wob);
+        }
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return this._worldObjects.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this._worldObjects.isEmpty();
+    }
+
+    public boolean contains(WorldObject wob) {
+        return this._worldObjects.contains(wob);
+    }
+
+    @Override
+    public boolean containsWith(Predicate<WorldObject> pred) {
+        return this._worldObjects.findFirst(pred) != null;
+    }
+
+    @Override
+    public boolean containsAt(int column, int row) {
+        return this._cells.get(column, row) != null;
+    }
+
+    /**
+     * Checks if a certain cell contains at least one `WorldObject` that matches a predicate. Only the `WorldObject`s in that cell
+     * are looked at.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @param pred
+     *            The predicate
+     * @return true iff at least one `WorldObject` in the specified cell matches the predicate
+     */
+    @Override
+    public boolean containsAt(int column, int row, Predicate<WorldObject> pred) {
+        for (WorldObject wob : this.cell(column, row)) {
+            if (pred.test(wob)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a certain cell contains at least one `WorldObject` whose state is solid. This only is a lookup in a bitmap.
+     *
+     * @param column
+     *            The column of the cell
+     * @param row
+     *            The row of the cell
+     * @return true iff the specified cell is blocked by a solid `WorldObject`
+     */
+    @Override
+    public boolean isSolidAt(int column, int row) {
+        return this._solid.isSolid(column, row);
+    }
+
+    @Override
+    public void forEach(Consumer<WorldObject> consumer) {
+        this._worldObjects.forEach(consumer);
+    }
+
+    @Override
+    public ArrayList<WorldObject> worldObjectsIn(int minColumn, int minRow, int maxColumn, int maxRow) {
+        ArrayList<WorldObject> result = new ArrayList<>();
+        this._cells.forEachIn(minColumn, minRow, maxColumn, maxRow, result::add);
+        result.sort(WorldObject::compareTo); // stable, so each cell keeps its order
+        return result;
+    }
+
+    @Override
+    public int countIn(int minColumn, int minRow, int maxColumn, int maxRow) {
+        return this._cells.countIn(minColumn, minRow, maxColumn, maxRow);
+    }
+
+    @Override
+    public void forEachIn(int minColumn, int minRow, int maxColumn, int maxRow, Consumer<WorldObject> consumer) {
+        this._cells.forEachIn(minColumn, minRow, maxColumn, maxRow, consumer);
+    }
+
+    @Override
+    public Bounds bounds() {
+        if ((this._bounds == null) && !this.isEmpty()) {
+            this._bounds = this._cells.bounds(); // racy but benign: the result is always the same
+        }
+        return this._bounds;
+    }
+
+    // package private
+
+    void diff(Territory to, Consumer<WorldObject> removed, Consumer<WorldObject> added) {
+        WorldObjectTree.diff(this._worldObjects, to._worldObjects, removed, added);
+    }
+
+    // private
+
+    /**
+     * Applies a delta by rebuilding the `Territory` from the `WorldObject`s that are kept, the replacements, which are ordered
+     * like by `replace()`, and the added ones.
+     */
+    private Territory applyInBulk(TerritoryDelta delta) {
+        Set<WorldObject> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(delta.removed());
+        IdentityHashMap<WorldObject, WorldObject> replacements = new IdentityHashMap<>();
+        for (TerritoryDelta.Replacement replacement : delta.replaced()) {
+            replacements.put(replacement.oldWob, replacement.newWob);
+        }
+        int size = (this.size() - removed.size()) + delta.added().size();
+        WorldObject[] wobs = new WorldObject[Math.max(size, 0)];
+        long[] seqs = new long[wobs.length];
+        int[] count = new int[2]; // the number of kept `WorldObject`s and of the removed and replaced ones that were found
+        this._worldObjects.forEachWithSeq((wob, seq) -> {
+            if (removed.contains(wob)) {
+                ++count[1];
+                return;
+            }
+            WorldObject newWob = replacements.get(wob);
+            if (newWob != null) {
+                ++count[1];
+            }
+            if (count[0] < wobs.length) {
+                wobs[count[0]] = newWob == null ? wob : newWob;
+                seqs[count[0]] = newWob == null ? seq : WorldObjectTree.seqOfReplacement(wob, seq, newWob);
+            }
+            ++count[0];
+        });
+        if (count[1] != (removed.size() + replacements.size())) throw new IllegalArgumentException();
+        for (WorldObject wob : delta.added()) {
+            wobs[count[0]] = wob;
+            seqs[count[0]++] = WorldObjectTree.nextSeq();
+        }
+        return of(wobs, seqs, count[0]);
+    }
+
+    /**
+     * Adds a `WorldObject` with a given sequence number, see `WorldObjectTree`
+     */
+    private Territory add(WorldObject wob, long seq) {
+        return this.withAdded(this._worldObjects.insert(wob, seq), wob);
+    }
+
+    /**
+     * Creates a `Territory` with the specified tree and the indexes of this `Territory` updated for an added `WorldObject`,
+     * which has to be contained in the tree.
+     */
+    private Territory withAdded(WorldObjectTree worldObjects, WorldObject wob) {
+        SolidLayer solid = this._solid;
+        if (wob.state.isSolid()) {
+            solid = solid.setSolid(wob.column, wob.row, true);
+        }
+        return new Territory(worldObjects, addToCell(this._cells, worldObjects, wob), solid);
+    }
+
+    /**
+     * Creates a `Territory` with the specified tree and the indexes of this `Territory` updated for a removed `WorldObject`.
+     */
+    private Territory withRemoved(WorldObjectTree worldObjects, WorldObject wob) {
+        CellGrid cells = removeFromCell(this._cells, wob);
+        SolidLayer solid = this._solid;
+        if (wob.state.isSolid()) {
+            // the cell might still be blocked by another solid `WorldObject`
+            boolean stillSolid = false;
+            WorldObject[] cell = cells.get(wob.column, wob.row);
+            if (cell != null) {
+                for (WorldObject other : cell) {
+                    stillSolid |= other.state.isSolid();
+                }
+            }
+            solid = solid.setSolid(wob.column, wob.row, stillSolid);
+        }
+        return new Territory(worldObjects, cells, solid);
+    }
+
+    private WorldObject[] cell(int column, int row) {
+        WorldObject[] cell = this._cells.get(column, row);
+        return cell == null ? EMPTY_CELL : cell;
+    }
+
+    /**
+     * Creates a `Territory` from `WorldObject`s with given sequence numbers at once
+     */
+    private static Territory of(WorldObject[] wobs, long[] seqs, int size) {
+        WorldObjectTree tree = WorldObjectTree.of(wobs, seqs, size);
+        WorldObject[] sorted = tree.toList().toArray(new WorldObject[size]);
+        return new Territory(tree, CellGrid.of(sorted), SolidLayer.of(sorted));
+    }
+
+    /**
+     * Inserts a `WorldObject` into its cell at the place it has in the tree, such that a cell has the same order as the whole
+     * `Territory`. Usually that is after all other `WorldObject`s in the cell, so the sequence numbers of the `WorldObject`s
+     * that compare equal are only looked up if there are any.
+     */
+    private static CellGrid addToCell(CellGrid cells, WorldObjectTree worldObjects, WorldObject wob) {
+        WorldObject[] old = cells.get(wob.column, wob.row);
+        if (old == null) return cells.put(wob.column, wob.row, new WorldObject[] { wob });
+        int index = old.length;
+        long seq = Long.MIN_VALUE; // looked up on demand
+        while (index > 0) {
+            int cmp = old[index - 1].compareTo(wob);
+            if (cmp < 0) break;
+            if (cmp == 0) {
+                if (seq == Long.MIN_VALUE) {
+                    seq = worldObjects.seqOf(wob);
+                }
+                if (worldObjects.seqOf(old[index - 1]) < seq) break;
+            }
+            --index;
+        }
+        WorldObject[] cell = new WorldObject[old.length + 1];
+        System.arraycopy(old, 0, cell, 0, index);
+        cell[index] = wob;
+        System.arraycopy(old, index, cell, index + 1, old.length - index);
+        return cells.put(wob.column, wob.row, cell);
+    }
+
+    private static CellGrid removeFromCell(CellGrid cells, WorldObject wob) {
+        WorldObject[] old = cells.get(wob.column, wob.row);
+        int index = 0;
+        while (old[index] != wob) {
+            ++index;
+        }
+        if (old.length == 1) return cells.put(wob.column, wob.row, null);
+        WorldObject[] cell = new WorldObject[old.length - 1];
+        System.arraycopy(old, 0, cell, 0, index);
+        System.arraycopy(old, index + 1, cell, index, cell.length - index);
+        return cells.put(wob.column, wob.row, cell);
+    }
+
+    /**
+     * A mutable buffer to create a `Territory` from many `WorldObject`s at once.
+     *
+     * Adding a `WorldObject` only appends it to an array. The added `WorldObject`s are put into the `Territory` when it is
+     * needed, e.g. by `result()`: If there are only a few of them, they are inserted one by one, such that the result shares
+     * most of its structure with the previous one. Otherwise all `WorldObject`s are sorted once and the tree and the indexes of
+     * the `Territory` are built in one pass each, instead of updating them for every single `WorldObject`. Either way, the
+     * `WorldObject`s that were already contained keep their sequence numbers, so they keep their order and comparing the
+     * result to the initial `Territory` only costs time for the changes.
+     */
+    public static class Builder {
+
+        /** The `Territory` with all `WorldObject`s except the pending ones */
+        private Territory _territory;
+        /** The `WorldObject`s that have been added after `_territory` was built */
+        private WorldObject[] _pending;
+        private long[] _pendingSeqs;
+        private int _pendingCount;
+
+        public Builder() {
+            this(new Territory());
+        }
+
+        /**
+         * Creates a builder that starts with all `WorldObject`s of a territory
+         *
+         * @param tty
+         *            The initial territory
+         */
+        public Builder(Territory tty) {
+            this._territory = tty;
+            this._pending = new WorldObject[16];
+            this._pendingSeqs = new long[16];
+            this._pendingCount = 0;
+        }
+
+        /**
+         * @return The number of `WorldObject`s in this builder
+         */
+        public int size() {
+            return this._territory.size() + this._pendingCount;
+        }
+
+        public Builder add(WorldObject wob) {
+            if (this._pendingCount == this._pending.length) {
+                this._pending = Arrays.copyOf(this._pending, 2 * this._pending.length);
+                this._pendingSeqs = Arrays.copyOf(this._pendingSeqs, 2 * this._pendingSeqs.length);
+            }
+            this._pending[this._pendingCount] = wob;
+            this._pendingSeqs[this._pendingCount++] = WorldObjectTree.nextSeq();
+            return this;
+        }
+
+        /**
+         * Removes all `WorldObject`s that match a predicate. This looks at all `WorldObject`s in this builder.
+         *
+         * @param pred
+         *            The predicate
+         * @return this
+         */
+        public Builder removeIf(Predicate<WorldObject> pred) {
+            this._territory = this.result().removeIf(pred);
+            return this;
+        }
+
+        public Builder removeAt(int column, int row) {
+            return this.removeAt(column, row, wob -> true);
+        }
+
+        /**
+         * Removes all `WorldObject`s in a certain cell that match a predicate. Only the `WorldObject`s in that cell are looked
+         * at, using the cell index of the `Territory` that the added `WorldObject`s are put into first.
+         *
+         * @param column
+         *            The column of the cell
+         * @param row
+         *            The row of the cell
+         * @param pred
+         *            The predicate
+         * @return this
+         */
+        public Builder removeAt(int column, int row, Predicate<WorldObject> pred) {
+            this._territory = this.result().removeAt(column, row, pred);
+            return this;
+        }
+
+        public Builder clear() {
+            this._territory = new Territory();
+            this._pending = new WorldObject[16];
+            this._pendingSeqs = new long[16];
+            this._pendingCount = 0;
+            return this;
+        }
+
+        /**
+         * Builds the `Territory`. If this builder is changed afterwards, the returned `Territory` isn't affected.
+         *
+         * @return The resulting territory
+         */
+        public Territory result() {
+            if (this._pendingCount == 0) return this._territory;
+            Territory tty = this._territory;
+            if ((this._pendingCount * BULK_APPLY_RATIO) <= tty.size()) {
+                for (int i = 0; i < this._pendingCount; ++i) {
+                    tty = tty.add(this._pending[i], this._pendingSeqs[i]);
+                }
+            } else {
+                int size = tty.size() + this._pendingCount;
+                WorldObject[] wobs = Arrays.copyOf(this._pending, size);
+                long[] seqs = Arrays.copyOf(this._pendingSeqs, size);
+                int[] index = { this._pendingCount };
+                tty._worldObjects.forEachWithSeq((wob, seq) -> {
+                    wobs[index[0]] = wob;
+                    seqs[index[0]++] = seq;
+                });
+                tty = of(wobs, seqs, size);
+            }
+            this._territory = tty;
+            Arrays.fill(this._pending, 0, this._pendingCount, null);
+            this._pendingCount = 0;
+            return tty;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An immutable description of the difference between two `Territory`s: the `WorldObject`s that were added, the ones that were
+ * removed and the ones that were replaced by another `WorldObject`.
+ *
+ * Consumers like the `Simulation` or the animations can apply a delta in time proportional to its size instead of comparing
+ * two whole `Territory`s. `WorldObject`s are compared by identity.
+ */
+public final class TerritoryDelta {
+
+    /** The delta without any change */
+    public static final TerritoryDelta EMPTY = new TerritoryDelta(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+
+    private final List<WorldObject> _added;
+    private final List<WorldObject> _removed;
+    private final List<Replacement> _replaced;
+
+    /**
+     * Creates a new delta
+     *
+     * @param added
+     *            The `WorldObject`s that were added
+     * @param removed
+     *            The `WorldObject`s that were removed
+     * @param replaced
+     *            The `WorldObject`s that were replaced
+     */
+    public TerritoryDelta(List<WorldObject> added, List<WorldObject> removed, List<Replacement> replaced) {
+        this._added = Collections.unmodifiableList(new ArrayList<>(added));
+        this._removed = Collections.unmodifiableList(new ArrayList<>(removed));
+        this._replaced = Collections.unmodifiableList(new ArrayList<>(replaced));
+    }
+
+    /**
+     * Computes the delta between two `Territory`s. The parts that both `Territory`s share are skipped, so if one `Territory` is
+     * derived from the other, e.g. by a `Territory.Builder`, this only costs O(d log n) for d differences.
+     *
+     * NOTE: The result never contains replacements, since a `Territory` doesn't know which `WorldObject`s belong together.
+     *
+     * @param from
+     *            The old `Territory`
+     * @param to
+     *            The new `Territory`
+     * @return The delta that turns `from` into `to`
+     */
+    public static TerritoryDelta between(Territory from, Territory to) {
+        ArrayList<WorldObject> added = new ArrayList<>();
+        ArrayList<WorldObject> removed = new ArrayList<>();
+        from.diff(to, removed::add, added::add);
+        if (!added.isEmpty() && !removed.isEmpty()) {
+            // a `WorldObject` that is contained in both, but was removed and added again in between, isn't a change
+            Set<WorldObject> removedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+            removedSet.addAll(removed);
+            Set<WorldObject> readded = Collections.newSetFromMap(new IdentityHashMap<>());
+            added.removeIf(wob -> removedSet.contains(wob) && readded.add(wob));
+            removed.removeIf(readded::contains);
+        }
+        if (added.isEmpty() && removed.isEmpty()) return EMPTY;
+        return new TerritoryDelta(added, removed, Collections.emptyList());
+    }
+
+    /**
+     * @param wob
+     *            The added `WorldObject`
+     * @return A delta that only adds a single `WorldObject`
+     */
+    public static TerritoryDelta added(WorldObject wob) {
+        return new TerritoryDelta(Collections.singletonList(wob), Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param wob
+     *            The removed `WorldObject`
+     * @return A delta that only removes a single `WorldObject`
+     */
+    public static TerritoryDelta removed(WorldObject wob) {
+        return new TerritoryDelta(Collections.emptyList(), Collections.singletonList(wob), Collections.emptyList());
+    }
+
+    /**
+     * @param oldWob
+     *            The replaced `WorldObject`
+     * @param newWob
+     *            The `WorldObject` that replaces `oldWob`
+     * @return A delta that only replaces a single `WorldObject`
+     */
+    public static TerritoryDelta replaced(WorldObject oldWob, WorldObject newWob) {
+        return new TerritoryDelta(Collections.emptyList(), Collections.emptyList(),
+                Collections.singletonList(new Replacement(oldWob, newWob)));
+    }
+
+    /**
+     * @return The `WorldObject`s that were added
+     */
+    public List<WorldObject> added() {
+        return this._added;
+    }
+
+    /**
+     * @return The `WorldObject`s that were removed
+     */
+    public List<WorldObject> removed() {
+        return this._removed;
+    }
+
+    /**
+     * @return The `WorldObject`s that were replaced
+     */
+    public List<Replacement> replaced() {
+        return this._replaced;
+    }
+
+    /**
+     * @return The number of changes in this delta
+     */
+    public int size() {
+        return this._added.size() + this._removed.size() + this._replaced.size();
+    }
+
+    /**
+     * @return true iff this delta doesn't change anything
+     */
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    /**
+     * A `WorldObject` that was replaced by another one, e.g. because an entity moved
+     */
+    public static final class Replacement {
+        public final WorldObject oldWob;
+        public final WorldObject newWob;
+
+        public Replacement(WorldObject oldWob, WorldObject newWob) {
+            if ((oldWob == null) || (newWob == null)) throw new IllegalArgumentException();
+            this.oldWob = oldWob;
+            this.newWob = newWob;
+        }
+    }
+}
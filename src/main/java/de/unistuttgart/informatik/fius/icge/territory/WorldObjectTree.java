@@ -0,0 +1,458 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A persistent (immutable) treap of `WorldObject`s ordered by `WorldObject.compareTo()`.
+ *
+ * Every mutation returns a new tree that shares all untouched nodes with the old one, so a single insertion or removal costs
+ * O(log n) time and allocations. `WorldObject`s that compare equal are ordered by the sequence number they got when they were
+ * inserted, i.e. later insertions come last, just like the stable sort the `Territory` used to do. A `WorldObject` that
+ * replaces another one gets the place that the stable sort would have given it, see `replace()`.
+ *
+ * The priority of a node is derived from its sequence number, which makes the shape of a tree only depend on the set of nodes
+ * it contains and not on the order of the operations that produced it.
+ */
+final class WorldObjectTree {
+
+    private static final AtomicLong _nextSeq = new AtomicLong();
+    /** The lowest sequence number handed out so far, for `WorldObject`s that have to come first */
+    private static final AtomicLong _lowestSeq = new AtomicLong();
+
+    /** The empty tree */
+    static final WorldObjectTree EMPTY = new WorldObjectTree(null);
+
+    private final Node _root;
+
+    private WorldObjectTree(Node root) {
+        this._root = root;
+    }
+
+    /**
+     * @return A new sequence number, which is greater than all sequence numbers that have been handed out before
+     */
+    static long nextSeq() {
+        return _nextSeq.getAndIncrement();
+    }
+
+    /**
+     * Creates a tree from `WorldObject`s with given sequence numbers, e.g. the ones they have in another tree. The
+     * `WorldObject`s are sorted once and the tree is built bottom-up in O(n) instead of inserting them one by one. Since the
+     * shape of a tree only depends on its nodes, the result has the same shape as any other tree with the same nodes.
+     *
+     * @param wobs
+     *            The `WorldObject`s in any order
+     * @param seqs
+     *            The sequence number of every `WorldObject`, which have to be distinct
+     * @param size
+     *            The number of `WorldObject`s to take from the arrays
+     * @return The resulting tree
+     */
+    static WorldObjectTree of(WorldObject[] wobs, long[] seqs, int size) {
+        if (size == 0) return EMPTY;
+        Node[] nodes = new Node[size];
+        for (int i = 0; i < size; ++i) {
+            nodes[i] = new Node(wobs[i], seqs[i], null, null);
+        }
+        Arrays.sort(nodes, (a, b) -> compare(a.wob, a.seq, b));
+        int[] left = new int[size];
+        int[] right = new int[size];
+        Arrays.fill(left, -1);
+        Arrays.fill(right, -1);
+        // build the Cartesian tree of the priorities while keeping its right spine on a stack
+        int[] spine = new int[size];
+        int top = 0;
+        for (int i = 0; i < size; ++i) {
+            int last = -1;
+            while ((top > 0) && hasPriority(nodes[i], nodes[spine[top - 1]])) {
+                last = spine[--top];
+            }
+            left[i] = last;
+            if (top > 0) {
+                right[spine[top - 1]] = i;
+            }
+            spine[top++] = i;
+        }
+        return new WorldObjectTree(build(nodes, left, right, spine[0]));
+    }
+
+    /**
+     * @return The number of `WorldObject`s in this tree
+     */
+    int size() {
+        return size(this._root);
+    }
+
+    /**
+     * @return true iff this tree doesn't contain any `WorldObject`
+     */
+    boolean isEmpty() {
+        return this._root == null;
+    }
+
+    /**
+     * Inserts a `WorldObject` after all `WorldObject`s that compare equal to it.
+     *
+     * @param wob
+     *            The `WorldObject` to insert
+     * @return The resulting tree
+     */
+    WorldObjectTree insert(WorldObject wob) {
+        return this.insert(wob, nextSeq());
+    }
+
+    /**
+     * Inserts a `WorldObject` with a given sequence number, which mustn't be used by another `WorldObject` of this tree.
+     *
+     * @param wob
+     *            The `WorldObject` to insert
+     * @param seq
+     *            The sequence number of the `WorldObject`
+     * @return The resulting tree
+     */
+    WorldObjectTree insert(WorldObject wob, long seq) {
+        return new WorldObjectTree(insert(this._root, new Node(wob, seq, null, null)));
+    }
+
+    /**
+     * Removes a `WorldObject` from this tree. `WorldObject`s are compared by identity.
+     *
+     * @param wob
+     *            The `WorldObject` to remove
+     * @return The resulting tree or `null` if the specified `WorldObject` isn't contained in this tree
+     */
+    WorldObjectTree remove(WorldObject wob) {
+        Node found = find(this._root, wob);
+        if (found == null) return null;
+        return new WorldObjectTree(remove(this._root, found));
+    }
+
+    /**
+     * Replaces a `WorldObject` by another one, which is ordered as if the old one had been changed in place and then all
+     * `WorldObject`s had been sorted stably: If both compare equal, the new one takes over the sequence number and hence the
+     * exact place of the old one. Otherwise it comes first among the `WorldObject`s that compare equal to it if the old one was
+     * less than them, and last if it was greater.
+     *
+     * @param oldWob
+     *            The `WorldObject` to replace. `WorldObject`s are compared by identity.
+     * @param newWob
+     *            The `WorldObject` to insert instead
+     * @return The resulting tree or `null` if the old `WorldObject` isn't contained in this tree
+     */
+    WorldObjectTree replace(WorldObject oldWob, WorldObject newWob) {
+        Node found = find(this._root, oldWob);
+        if (found == null) return null;
+        return new WorldObjectTree(insert(remove(this._root, found), new Node(newWob, seqOfReplacement(oldWob, found.seq,
+                newWob), null, null)));
+    }
+
+    /**
+     * @param oldWob
+     *            A `WorldObject` that is replaced
+     * @param oldSeq
+     *            The sequence number of the replaced `WorldObject`
+     * @param newWob
+     *            The `WorldObject` that replaces it
+     * @return The sequence number of the new `WorldObject`, see `replace()`
+     */
+    static long seqOfReplacement(WorldObject oldWob, long oldSeq, WorldObject newWob) {
+        int cmp = oldWob.compareTo(newWob);
+        if (cmp == 0) return oldSeq;
+        return cmp < 0 ? _lowestSeq.decrementAndGet() : nextSeq();
+    }
+
+    /**
+     * Removes all `WorldObject`s that match a predicate while keeping all subtrees that don't contain a match.
+     *
+     * @param pred
+     *            The predicate
+     * @return The resulting tree, which is `this` if nothing was removed
+     */
+    WorldObjectTree removeIf(Predicate<WorldObject> pred) {
+        Node root = removeIf(this._root, pred);
+        return root == this._root ? this : new WorldObjectTree(root);
+    }
+
+    /**
+     * @param wob
+     *            The `WorldObject` to look for. `WorldObject`s are compared by identity.
+     * @return true iff the specified `WorldObject` is contained in this tree
+     */
+    boolean contains(WorldObject wob) {
+        return find(this._root, wob) != null;
+    }
+
+    /**
+     * @param wob
+     *            The `WorldObject` to look for. `WorldObject`s are compared by identity.
+     * @return The sequence number of the specified `WorldObject` or `Long.MIN_VALUE` if it isn't contained in this tree
+     */
+    long seqOf(WorldObject wob) {
+        Node found = find(this._root, wob);
+        return found == null ? Long.MIN_VALUE : found.seq;
+    }
+
+    /**
+     * Calls a consumer for every `WorldObject` in ascending order
+     *
+     * @param consumer
+     *            The consumer to call
+     */
+    void forEach(Consumer<WorldObject> consumer) {
+        forEach(this._root, consumer);
+    }
+
+    /**
+     * Calls a consumer for every `WorldObject` and its sequence number in ascending order
+     *
+     * @param consumer
+     *            The consumer to call
+     */
+    void forEachWithSeq(SeqConsumer consumer) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node current = this._root;
+        while ((current != null) || !stack.isEmpty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            current = stack.pop();
+            consumer.accept(current.wob, current.seq);
+            current = current.right;
+        }
+    }
+
+    /**
+     * Calls consumers for the differences between two trees. Subtrees that are shared by both trees are skipped, so if one tree
+     * is derived from the other, this costs O(d log n) for d differences instead of looking at all `WorldObject`s.
+     *
+     * @param from
+     *            The old tree
+     * @param to
+     *            The new tree
+     * @param removed
+     *            The consumer to call for every `WorldObject` that is only contained in the old tree
+     * @param added
+     *            The consumer to call for every `WorldObject` that is only contained in the new tree
+     */
+    static void diff(WorldObjectTree from, WorldObjectTree to, Consumer<WorldObject> removed, Consumer<WorldObject> added) {
+        diff(from._root, to._root, removed, added);
+    }
+
+    /**
+     * Finds the first `WorldObject` in ascending order that matches a predicate
+     *
+     * @param pred
+     *            The predicate
+     * @return The first match or `null` if there is none
+     */
+    WorldObject findFirst(Predicate<WorldObject> pred) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node current = this._root;
+        while ((current != null) || !stack.isEmpty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            current = stack.pop();
+            if (pred.test(current.wob)) return current.wob;
+            current = current.right;
+        }
+        return null;
+    }
+
+    /**
+     * @return All `WorldObject`s in ascending order
+     */
+    ArrayList<WorldObject> toList() {
+        ArrayList<WorldObject> result = new ArrayList<>(this.size());
+        this.forEach(result::add);
+        return result;
+    }
+
+    // private
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void forEach(Node node, Consumer<WorldObject> consumer) {
+        ArrayDeque<Node> stack = new ArrayDeque<>();
+        Node current = node;
+        while ((current != null) || !stack.isEmpty()) {
+            while (current != null) {
+                stack.push(current);
+                current = current.left;
+            }
+            current = stack.pop();
+            consumer.accept(current.wob);
+            current = current.right;
+        }
+    }
+
+    private static void diff(Node from, Node to, Consumer<WorldObject> removed, Consumer<WorldObject> added) {
+        if (from == to) return;
+        if (from == null) {
+            forEach(to, added);
+        } else if (to == null) {
+            forEach(from, removed);
+        } else if ((from.seq == to.seq) && (from.wob == to.wob)) {
+            // the same `WorldObject` with different children
+            diff(from.left, to.left, removed, added);
+            diff(from.right, to.right, removed, added);
+        } else if (from.seq == to.seq) {
+            // a `WorldObject` that has been replaced by one that compares equal, so both children are split at the same place
+            removed.accept(from.wob);
+            added.accept(to.wob);
+            diff(from.left, to.left, removed, added);
+            diff(from.right, to.right, removed, added);
+        } else if (hasPriority(from, to)) {
+            // the root of a tree has the highest priority in it, so `from` can't be contained in the new tree
+            removed.accept(from.wob);
+            Node[] parts = split(to, from.wob, from.seq);
+            diff(from.left, parts[0], removed, added);
+            diff(from.right, parts[1], removed, added);
+        } else {
+            added.accept(to.wob);
+            Node[] parts = split(from, to.wob, to.seq);
+            diff(parts[0], to.left, removed, added);
+            diff(parts[1], to.right, removed, added);
+        }
+    }
+
+    private static int compare(WorldObject wob, long seq, Node node) {
+        int result = wob.compareTo(node.wob);
+        if (result != 0) return result;
+        return Long.compare(seq, node.seq);
+    }
+
+    private static boolean hasPriority(Node a, Node b) {
+        return (a.priority > b.priority) || ((a.priority == b.priority) && (a.seq < b.seq));
+    }
+
+    private static Node build(Node[] nodes, int[] left, int[] right, int i) {
+        if (i < 0) return null;
+        Node leftNode = build(nodes, left, right, left[i]);
+        Node rightNode = build(nodes, left, right, right[i]);
+        return nodes[i].with(leftNode, rightNode);
+    }
+
+    private static Node insert(Node root, Node node) {
+        Node[] parts = split(root, node.wob, node.seq);
+        return merge(merge(parts[0], node), parts[1]);
+    }
+
+    /**
+     * Splits a tree into the nodes that are less than the specified key and the nodes that are greater than or equal to it.
+     */
+    private static Node[] split(Node node, WorldObject wob, long seq) {
+        if (node == null) return new Node[] { null, null };
+        if (compare(wob, seq, node) > 0) {
+            Node[] parts = split(node.right, wob, seq);
+            parts[0] = node.with(node.left, parts[0]);
+            return parts;
+        }
+        Node[] parts = split(node.left, wob, seq);
+        parts[1] = node.with(parts[1], node.right);
+        return parts;
+    }
+
+    /**
+     * Merges two trees where all nodes of the first tree are less than all nodes of the second tree.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (hasPriority(left, right)) return left.with(left.left, merge(left.right, right));
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    private static Node find(Node node, WorldObject wob) {
+        while (node != null) {
+            int cmp = wob.compareTo(node.wob);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                // equal `WorldObject`s may be spread over both subtrees
+                if (node.wob == wob) return node;
+                Node found = find(node.left, wob);
+                return found != null ? found : find(node.right, wob);
+            }
+        }
+        return null;
+    }
+
+    private static Node remove(Node node, Node toRemove) {
+        if (node == toRemove) return merge(node.left, node.right);
+        if (compare(toRemove.wob, toRemove.seq, node) < 0) return node.with(remove(node.left, toRemove), node.right);
+        return node.with(node.left, remove(node.right, toRemove));
+    }
+
+    private static Node removeIf(Node node, Predicate<WorldObject> pred) {
+        if (node == null) return null;
+        Node left = removeIf(node.left, pred);
+        Node right = removeIf(node.right, pred);
+        if (pred.test(node.wob)) return merge(left, right);
+        return node.with(left, right);
+    }
+
+    private static int priority(long seq) {
+        // murmur3 finalizer, such that the priorities look random although they are deterministic
+        long h = seq;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    /**
+     * A consumer of a `WorldObject` and its sequence number
+     */
+    @FunctionalInterface
+    interface SeqConsumer {
+        void accept(WorldObject wob, long seq);
+    }
+
+    private static final class Node {
+        final WorldObject wob;
+        final long seq;
+        final int priority;
+        final Node left;
+        final Node right;
+        final int size;
+
+        Node(WorldObject wob, long seq, Node left, Node right) {
+            this(wob, seq, priority(seq), left, right);
+        }
+
+        private Node(WorldObject wob, long seq, int priority, Node left, Node right) {
+            this.wob = wob;
+            this.seq = seq;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + size(left) + size(right);
+        }
+
+        Node with(Node left, Node right) {
+            if ((left == this.left) && (right == this.right)) return this;
+            return new Node(this.wob, this.seq, this.priority, left, right);
+        }
+    }
+}
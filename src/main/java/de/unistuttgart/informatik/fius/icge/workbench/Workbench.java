@@ -7,6 +7,8 @@
 
 package de.unistuttgart.informatik.fius.icge.workbench;
 
+import de.unistuttgart.informatik.fius.icge.event.AsyncListener;
+import de.unistuttgart.informatik.fius.icge.event.AsyncListener.OverflowPolicy;
 import de.unistuttgart.informatik.fius.icge.event.Event;
 import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
 import de.unistuttgart.informatik.fius.icge.event.EventHandler;
@@ -23,21 +25,37 @@ import de.unistuttgart.informatik.fius.icge.simulation.Simulation.PauseEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.ResumeEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SetTerritoryEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickCommitEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickEvent;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 import de.unistuttgart.informatik.fius.icge.workbench.swing.SwingView;
 
 public class Workbench {
     
+    private static final long TUNING_INTERVAL_NANOS = 250_000_000L;
+    private static final int MAX_TICK_MILLIS = 1000;
+    private static final int EVENT_QUEUE_CAPACITY = 4096;
+    
     private final String _name;
     private final WorkbenchView _view;
     private EventHandler _eventHandler = new EventHandler();
+    /**
+     * Logs the events of the shown simulation on the event dispatch thread, such that the simulation doesn't wait for the log.
+     * If the log falls too far behind, events are coalesced. Every shown simulation gets a new listener, since a listener is
+     * closed for good once the view is closed.
+     */
+    private volatile AsyncListener _listener = this.createListener();
+    /** Adapts the tick rate during the ticks of the shown simulation */
+    private final EventListener _tickListener = this::handleTick;
+    private boolean _adaptiveTickRate = false;
+    /** The simulation whose tick rate is adapted and the number of milliseconds per tick that were set before */
+    private Simulation _tunedSimulation = null;
+    private int _baseTickMillis;
+    private long _lastTuningNanos;
 
     public Workbench(String name) {
         this._name = name;
         this._view = new SwingView(name);
-
-        this._eventHandler.addListener(SimulationEvent.class, this::handle);
     }
     
     public boolean opened() {
@@ -53,7 +71,15 @@ public class Workbench {
     }
     
     public void setSimulation(Simulation sim) {
+        this._eventHandler.removeListener(this._listener);
+        this._eventHandler.removeListener(this._tickListener);
         this._view.setSimulation(sim);
+        this.restoreTickRate(); // of the simulation that was shown before
+        if (sim != null) {
+            this._listener = this.createListener();
+            this._eventHandler.addListener(SimulationEvent.class, sim, this._listener);
+            this._eventHandler.addListener(TickEvent.class, sim, this._tickListener);
+        }
         EventDispatcher.raise(new SetSimulationEvent(this._view));
     }
     
@@ -97,15 +123,138 @@ public class Workbench {
         this._view.print(toPrint);
     }
     
+    public double targetFrameRate() {
+        return this._view.targetFrameRate();
+    }
+    
+    public void setTargetFrameRate(double fps) {
+        this._view.setTargetFrameRate(fps);
+    }
+    
+    public double renderLagMillis() {
+        return this._view.renderLagMillis();
+    }
+    
+    public long coalescedFrames() {
+        return this._view.coalescedFrames();
+    }
+    
+    public long droppedFrames() {
+        return this._view.droppedFrames();
+    }
+    
+    /**
+     * @return The number of events of the shown simulation that haven't been logged yet
+     */
+    public int eventQueueDepth() {
+        return this._listener.queueDepth();
+    }
+    
+    /**
+     * @return The number of events that haven't been logged since the log was too far behind
+     */
+    public long skippedEvents() {
+        return this._listener.droppedEvents() + this._listener.coalescedEvents();
+    }
+    
+    public synchronized boolean adaptiveTickRate() {
+        return this._adaptiveTickRate;
+    }
+    
+    /**
+     * Enables or disables the adaption of the tick rate of the shown simulation to the renderer. While enabled, the ticks are
+     * slowed down as long as the renderer is more than a frame behind and sped up again up to the tick rate that was set
+     * before. Disabling restores that tick rate.
+     * 
+     * @param adaptive
+     *            Whether to adapt the tick rate
+     */
+    public void setAdaptiveTickRate(boolean adaptive) {
+        synchronized (this) {
+            this._adaptiveTickRate = adaptive;
+        }
+        this.restoreTickRate();
+    }
+    
     // private
     
+    private AsyncListener createListener() {
+        return AsyncListener.onEventDispatchThread(this::handle, EVENT_QUEUE_CAPACITY, OverflowPolicy.COALESCE);
+    }
+    
+    /**
+     * Sets the tick rate of the simulation whose tick rate has been adapted back to the one that was set before. The tick rate
+     * is set without holding the lock of this workbench, since `tuneTickRate` takes it while holding the lock of the
+     * simulation.
+     */
+    private void restoreTickRate() {
+        Simulation tuned;
+        int baseTickMillis;
+        synchronized (this) {
+            tuned = this._tunedSimulation;
+            baseTickMillis = this._baseTickMillis;
+            this._tunedSimulation = null;
+        }
+        if (tuned != null) {
+            tuned.setTickMillis(baseTickMillis);
+        }
+    }
+    
     private boolean handle(Event ev) {
         if (!this._view.opened()) return false;
         if (this.simulation() != ((SimulationEvent) ev).simulation) return true;
+        if (ev instanceof TickCommitEvent) {
+            for (SimulationEvent sev : ((TickCommitEvent) ev).events) {
+                this.log(sev);
+            }
+        } else {
+            this.log(ev);
+        }
+        this._view.update();
+        return true;
+    }
+
+    private boolean handleTick(Event ev) {
+        if (!this._view.opened()) return false;
+        this.tuneTickRate(((TickEvent) ev).simulation);
+        return true;
+    }
+
+    /**
+     * Adapts the tick rate to how far the renderer is behind. This is called during a tick, which holds the lock of the
+     * simulation, so the tick rate can be set without waiting.
+     */
+    private synchronized void tuneTickRate(Simulation sim) {
+        if (!this._adaptiveTickRate || (sim != this.simulation())) return; // e.g. a tick that raced with `setSimulation`
+        long now = System.nanoTime();
+        if (this._tunedSimulation != sim) {
+            this._tunedSimulation = sim;
+            this._baseTickMillis = sim.tickMillis();
+            this._lastTuningNanos = now;
+        }
+        if ((now - this._lastTuningNanos) < TUNING_INTERVAL_NANOS) return;
+        this._lastTuningNanos = now;
+        double frameMillis = 1000 / this._view.targetFrameRate();
+        double lag = this._view.renderLagMillis();
+        int millis = sim.tickMillis();
+        if (lag > frameMillis) {
+            millis = Math.min(MAX_TICK_MILLIS, Math.max(millis + 1, (millis * 5) / 4));
+        } else if (lag < (frameMillis / 2)) {
+            millis = Math.max(this._baseTickMillis, Math.min(millis - 1, (millis * 4) / 5));
+        }
+        if (millis != sim.tickMillis()) {
+            sim.setTickMillis(millis);
+        }
+    }
+
+    private void log(Event ev) {
         if (ev instanceof SpawnEvent) {
-            WorldObject wob = ((SpawnEvent) ev).entity.worldObject();
-            this._view.println(((EntityEvent) ev).entity.getClass().getSimpleName() + " :: spawn(" + wob.column + ", " + wob.row
-                    + ", " + wob.direction + ");");
+            SpawnEvent sev = (SpawnEvent) ev;
+            // the event is logged asynchronously, so the entity might have turned or despawned since, in which case
+            // `Entity.worldObject()` would throw
+            WorldObject wob = sev.simulation.worldObject(sev.entity);
+            this._view.println(sev.entity.getClass().getSimpleName() + " :: spawn(" + sev.column + ", " + sev.row + ", "
+                    + (wob == null ? "?" : wob.direction) + ");");
         } else if (ev instanceof DespawnEvent) {
             this._view.println(((EntityEvent) ev).entity.getClass().getSimpleName() + " :: despawn();");
         } else if (ev instanceof MoveEvent) {
@@ -132,8 +281,6 @@ public class Workbench {
         } else {
             this._view.println("- unknown -");
         }
-        this._view.update();
-        return true;
     }
 
     // Events
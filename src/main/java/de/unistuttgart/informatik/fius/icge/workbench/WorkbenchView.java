@@ -41,5 +41,29 @@ public interface WorkbenchView {
     
     void clearLog();
     
+    /**
+     * Requests a new frame. Requests that arrive while a frame is pending are coalesced into it and frames aren't rendered
+     * more often than the target frame rate.
+     */
     void update();
+    
+    double targetFrameRate();
+    
+    void setTargetFrameRate(double fps);
+    
+    /**
+     * @return How many milliseconds the renderer is behind: how much later than planned the last frame was rendered or, if
+     *         more, how long a frame that isn't rendered yet is overdue
+     */
+    double renderLagMillis();
+    
+    /**
+     * @return The number of frame requests that were merged into an already pending frame
+     */
+    long coalescedFrames();
+    
+    /**
+     * @return The number of frames that were rendered more than a frame interval later than planned
+     */
+    long droppedFrames();
 }
@@ -42,7 +42,9 @@ import de.unistuttgart.informatik.fius.icge.event.EventListener;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity.DespawnEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Entity.EntityEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.ProgramRunner;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickCommitEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.inspection.InspectionManager;
 import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
 
@@ -51,6 +53,8 @@ import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
  */
 public class EntityInspector {
 
+    private static final ProgramRunner METHOD_CALLS = new ProgramRunner("Inspector method call");
+
     private final Set<Class<?>> _editableTypes = new HashSet<>(Arrays.asList(String.class, Integer.TYPE, Integer.class,
             Double.TYPE, Double.class, Float.TYPE, Float.class, Long.TYPE, Long.class, Boolean.TYPE, Boolean.class));
 
@@ -109,6 +113,12 @@ public class EntityInspector {
     private void initFrame() {
         this._frame = new JFrame("Entity Inspector");
         this._frame.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        this._frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                EntityInspector.this._eventHandler.close();
+            }
+        });
         this._frame.setLocationByPlatform(true);
         this._frame.setResizable(true);
         this._frame.setSize(350, 500);
@@ -152,14 +162,13 @@ public class EntityInspector {
         this.setEntity(this._entities.get(0));
 
         // listener for entity events which updates the inspected values
-        this._eventHandler.addListener(EntityEvent.class, ev -> {
-            EntityEvent eev = (EntityEvent) ev;
-            if (this._selectedEntity == eev.entity) {
-                if (eev instanceof DespawnEvent) {
-                    this.inspectEntity();
-                } else {
-                    this.updateEntityValues();
-                }
+        this._eventHandler.addListener(EntityEvent.class, this._simulation, ev -> {
+            this.handleEntityEvent((EntityEvent) ev);
+            return true;
+        });
+        this._eventHandler.addListener(TickCommitEvent.class, this._simulation, ev -> {
+            for (EntityEvent eev : ((TickCommitEvent) ev).eventsOf(EntityEvent.class)) {
+                this.handleEntityEvent(eev);
             }
             return true;
         });
@@ -268,6 +277,17 @@ public class EntityInspector {
         return gbc;
     }
 
+    /** Update UI if an event concerns the inspected entity */
+    private void handleEntityEvent(EntityEvent eev) {
+        if (this._selectedEntity == eev.entity) {
+            if (eev instanceof DespawnEvent) {
+                this.inspectEntity();
+            } else {
+                this.updateEntityValues();
+            }
+        }
+    }
+
     /** Update UI on value changes in entity */
     private void updateEntityValues() {
         if (!this._selectedEntity.alive()) {
@@ -325,7 +345,7 @@ public class EntityInspector {
             parameterValues[i] = userInput;
         }
 
-        new Thread(() -> {
+        METHOD_CALLS.start(() -> {
             try {
                 Object result = this._inspectionManager.invokeMethod(this._selectedEntity, method, parameterValues);
                 JTextArea valueLabel = this._methodToLabel.get(method);
@@ -334,7 +354,7 @@ public class EntityInspector {
                 }
             } catch (IllegalStateException e) {}
             this.updateEntityValues();
-        }, "Inspector (Call " + method + ")").start();
+        });
     }
 
     /**
@@ -112,6 +112,7 @@ public class SimPanel extends JPanel {
             this.drawWorldObjects();
             this.drawMouseOverlay();
         }
+        this._view.framePainted();
     }
 
     private void updateSettings() {
@@ -140,8 +141,7 @@ public class SimPanel extends JPanel {
     private Territory addConstruction(Territory tty) {
         for (int y = this._startRow; y <= this._endRow; ++y) {
             for (int x = this._startCol; x <= this._endCol; ++x) {
-                int captX = x, captY = y;
-                if (!tty.containsWith(wob -> (wob.column == captX) && (wob.row == captY))) {
+                if (!tty.containsAt(x, y)) {
                     tty = tty.add(new WorldObject(new WallState(), x, y));
                 }
             }
@@ -153,10 +153,8 @@ public class SimPanel extends JPanel {
         Image img = Images.image("cross.png");
         for (int y = this._startRow; y <= this._endRow; ++y) {
             for (int x = this._startCol; x <= this._endCol; ++x) {
-                int captX = x, captY = y;
                 Territory oldTty = tty;
-                tty = oldTty.removeIf(
-                        wob -> (wob.column == captX) && (wob.row == captY) && (wob.state.getClass() == WallState.class));
+                tty = oldTty.removeAt(x, y, wob -> wob.state.getClass() == WallState.class);
                 if (tty != oldTty) {
                     this.drawImage(x, y, img);
                 }
@@ -214,7 +212,12 @@ public class SimPanel extends JPanel {
     }
 
     private void drawWorldObjects() {
-        ArrayList<WorldObject> wobs = this._animated.territory().worldObjects();
+        // only draw the visible cells and a margin of one cell for animated `WorldObject`s that move into the view
+        int minCol = this.convertToColumn(0) - 1;
+        int minRow = this.convertToRow(0) - 1;
+        int maxCol = this.convertToColumn(this._bounds.width) + 1;
+        int maxRow = this.convertToRow(this._bounds.height) + 1;
+        ArrayList<WorldObject> wobs = this._animated.territory().worldObjectsIn(minCol, minRow, maxCol, maxRow);
         if (wobs.isEmpty()) return;
         WorldObject nextWob = wobs.get(0);
         int drawCount = 1;
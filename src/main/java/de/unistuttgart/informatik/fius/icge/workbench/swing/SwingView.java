@@ -11,6 +11,8 @@ import java.awt.BorderLayout;
 import java.awt.EventQueue;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.*;
 
@@ -20,8 +22,27 @@ import de.unistuttgart.informatik.fius.icge.workbench.WorkbenchView;
 import de.unistuttgart.informatik.fius.icge.workbench.tools.SimulationController;
 import de.unistuttgart.informatik.fius.icge.workbench.tools.ToolHandler;
 
+/**
+ * The Swing implementation of a `WorkbenchView`.
+ *
+ * Every change of the simulation requests a frame, which can be far more often than the event dispatch thread can paint.
+ * Hence at most one frame is pending at a time and further requests are coalesced into it, and frames are rendered at most
+ * with the target frame rate. How far the renderer is behind is published, such that the simulation can slow down.
+ */
 public class SwingView implements WorkbenchView {
     
+    private final AtomicBoolean _framePending = new AtomicBoolean(false);
+    /** When the pending frame is planned to be rendered */
+    private volatile long _frameDueNanos;
+    /** When the last frame was started */
+    private volatile long _lastFrameNanos = System.nanoTime() - 1_000_000_000L;
+    /** When the frame that is being painted was planned to be rendered or `0` if no frame is being painted */
+    private volatile long _paintingDueNanos = 0;
+    private volatile long _renderLagNanos = 0;
+    private volatile double _targetFrameRate = 60;
+    private final AtomicLong _coalescedFrames = new AtomicLong();
+    private final AtomicLong _droppedFrames = new AtomicLong();
+    
     private JFrame _frame;
     private JTextArea _logArea;
     private ToolBar _toolBar;
@@ -46,6 +67,9 @@ public class SwingView implements WorkbenchView {
     
     @Override
     public void setSimulation(Simulation sim) {
+        if (this._settings.animator != null) {
+            this._settings.animator.close();
+        }
         if (sim == null) {
             this._settings = this._settings.setAnimator(null);
         } else {
@@ -121,10 +145,55 @@ public class SwingView implements WorkbenchView {
     
     @Override
     public void update() {
-        EventQueue.invokeLater(() -> {
-            this._frame.validate();
-            this._frame.repaint();
-        });
+        if (!this._framePending.compareAndSet(false, true)) {
+            this._coalescedFrames.incrementAndGet();
+            return;
+        }
+        long now = System.nanoTime();
+        long delay = Math.max(0, (this._lastFrameNanos + this.frameNanos()) - now);
+        this._frameDueNanos = now + delay;
+        if (delay == 0) {
+            EventQueue.invokeLater(this::renderFrame);
+        } else {
+            Timer timer = new Timer((int) ((delay + 999_999) / 1_000_000), e -> this.renderFrame());
+            timer.setRepeats(false);
+            timer.start();
+        }
+    }
+    
+    @Override
+    public double targetFrameRate() {
+        return this._targetFrameRate;
+    }
+    
+    @Override
+    public void setTargetFrameRate(double fps) {
+        if (!(fps > 0)) throw new IllegalArgumentException();
+        this._targetFrameRate = fps;
+    }
+    
+    @Override
+    public double renderLagMillis() {
+        long now = System.nanoTime();
+        long lag = this._renderLagNanos;
+        if (this._framePending.get()) {
+            lag = Math.max(lag, now - this._frameDueNanos);
+        }
+        long paintingDue = this._paintingDueNanos;
+        if (paintingDue != 0) {
+            lag = Math.max(lag, now - paintingDue);
+        }
+        return lag / 1e6;
+    }
+    
+    @Override
+    public long coalescedFrames() {
+        return this._coalescedFrames.get();
+    }
+    
+    @Override
+    public long droppedFrames() {
+        return this._droppedFrames.get();
     }
     
     // package private
@@ -133,8 +202,42 @@ public class SwingView implements WorkbenchView {
         return this._settings;
     }
     
+    /**
+     * Called by the `SimPanel` on the event dispatch thread after it has been painted
+     */
+    void framePainted() {
+        long paintingDue = this._paintingDueNanos;
+        if (paintingDue == 0) return; // painted by Swing itself, e.g. after resizing the window
+        this._paintingDueNanos = 0;
+        this._renderLagNanos = Math.max(0, System.nanoTime() - paintingDue);
+        if (this._renderLagNanos > this.frameNanos()) {
+            this._droppedFrames.incrementAndGet();
+        }
+    }
+    
     // private
     
+    private long frameNanos() {
+        return (long) (1e9 / this._targetFrameRate);
+    }
+    
+    /**
+     * Renders the pending frame on the event dispatch thread. Swing paints asynchronously and merges the repaints that are
+     * requested until then, so the frame counts as rendered when the `SimPanel` has been painted.
+     */
+    private void renderFrame() {
+        this._lastFrameNanos = System.nanoTime();
+        if (this._paintingDueNanos == 0) {
+            this._paintingDueNanos = this._frameDueNanos;
+        }
+        this._framePending.set(false);
+        this._frame.validate();
+        this._frame.repaint();
+        if (!this._simPanel.isShowing()) {
+            this._paintingDueNanos = 0; // a hidden panel isn't painted, which doesn't mean that the renderer is behind
+        }
+    }
+    
     private void initFrame(String name) {
         this._frame = new JFrame(name);
         this._frame.setSize((10 * 60) + 400, (5 * 60) + 200);
@@ -48,7 +48,7 @@ public abstract class AbstractSpawnEntityTool extends AbstractTool {
 
     @Override
     public boolean canApply(Simulation sim, int column, int row) {
-        return !sim.entitiesAt(column, row).stream().filter(ent -> ent.state().isSolid()).findFirst().isPresent();
+        return !sim.territory().isSolidAt(column, row);
     }
 
 }
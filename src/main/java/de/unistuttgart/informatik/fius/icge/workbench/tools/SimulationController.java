@@ -23,6 +23,7 @@ import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.PauseEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.ResumeEvent;
 import de.unistuttgart.informatik.fius.icge.simulation.Simulation.SimulationEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation.TickCommitEvent;
 import de.unistuttgart.informatik.fius.icge.workbench.Workbench.SetSimulationEvent;
 import de.unistuttgart.informatik.fius.icge.workbench.WorkbenchView;
 import de.unistuttgart.informatik.fius.icge.workbench.swing.Images;
@@ -71,6 +72,7 @@ public class SimulationController {
 
         this._eventHandler.addListener(SetSimulationEvent.class, this::handleSetSimulation);
         this._eventHandler.addListener(EntityEvent.class, this::handleEntityEvent);
+        this._eventHandler.addListener(TickCommitEvent.class, this::handleEntityEvent); // the entity events of a tick are one step
         this._eventHandler.addListener(PauseEvent.class, this::handlePause);
         this._eventHandler.addListener(ResumeEvent.class, this::handleResume);
     }
@@ -77,7 +77,7 @@ public class ToolHandler {
     public void onMousePressed(Simulation sim, int column, int row) {
         Tool t = this._tools.get(this._currentTool);
         if (!(t instanceof AreaTool)) {
-            synchronized (sim) {
+            synchronized (sim) { // the changes of a tool mustn't interleave with a tick; reading doesn't need the lock
                 t.apply(sim, column, row);
             }
         }
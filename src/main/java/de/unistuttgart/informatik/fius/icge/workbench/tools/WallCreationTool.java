@@ -54,9 +54,7 @@ public class WallCreationTool extends AbstractTool implements AreaTool {
     }
 
     private Territory internalApply(Territory tty, int x, int y) {
-        final int captX = x;
-        final int captY = y;
-        if (!tty.containsWith(wob -> (wob.column == captX) && (wob.row == captY))) {
+        if (!tty.containsAt(x, y)) {
             return tty.add(new WorldObject(new WallState(), x, y));
         }
         return tty;
@@ -64,14 +62,18 @@ public class WallCreationTool extends AbstractTool implements AreaTool {
 
     @Override
     public boolean canApply(Simulation sim, int column, int row) {
-        return sim.entitiesAt(column, row).isEmpty();
+        return !sim.territory().containsAt(column, row);
     }
 
     @Override
     public boolean canApply(Simulation sim, int startColumn, int endColumn, int startRow, int endRow) {
+        Territory tty = sim.territory();
+        long cellCount = (((long) endColumn - startColumn) + 1) * (((long) endRow - startRow) + 1);
+        // if there are less world objects than cells, at least one cell has to be empty
+        if (tty.countIn(startColumn, startRow, endColumn, endRow) < cellCount) return true;
         for (int col = startColumn; col <= endColumn; ++col) {
             for (int row = startRow; row <= endRow; ++row) {
-                if (sim.entitiesAt(col, row).isEmpty()) {
+                if (!tty.containsAt(col, row)) {
                     return true;
                 }
             }
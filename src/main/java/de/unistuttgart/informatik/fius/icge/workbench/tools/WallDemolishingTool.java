@@ -53,19 +53,19 @@ public class WallDemolishingTool extends AbstractTool implements AreaTool {
     }
 
     private Territory internalApply(Territory tty, int column, int row) {
-        return tty.removeIf(wob -> (wob.column == column) && (wob.row == row) && (wob.state instanceof WallState));
+        return tty.removeAt(column, row, wob -> wob.state instanceof WallState);
     }
 
     @Override
     public boolean canApply(Simulation sim, int column, int row) {
-        return sim.territory()
-                .containsWith(wob -> (wob.column == column) && (wob.row == row) && (wob.state instanceof WallState));
+        return sim.territory().containsAt(column, row, wob -> wob.state instanceof WallState);
     }
 
     @Override
     public boolean canApply(Simulation sim, int startColumn, int endColumn, int startRow, int endRow) {
-        return sim.territory().containsWith(wob -> (wob.column >= startColumn) && (wob.row <= endColumn)
-                && (wob.row >= startRow) && (wob.row <= endRow) && (wob.state instanceof WallState));
+        boolean[] found = new boolean[1];
+        sim.territory().forEachIn(startColumn, startRow, endColumn, endRow, wob -> found[0] |= wob.state instanceof WallState);
+        return found[0];
     }
 
 }
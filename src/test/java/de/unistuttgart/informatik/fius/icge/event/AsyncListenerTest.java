@@ -0,0 +1,64 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.informatik.fius.icge.event.AsyncListener.OverflowPolicy;
+import de.unistuttgart.informatik.fius.icge.event.EventBusTest.FirstEvent;
+import de.unistuttgart.informatik.fius.icge.event.EventBusTest.SecondEvent;
+
+/**
+ * Tests the overflow policies of an `AsyncListener`
+ */
+public class AsyncListenerTest {
+
+    @Test
+    public void testCoalesce() {
+        ArrayList<Event> handled = new ArrayList<>();
+        ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        AsyncListener listener = new AsyncListener(handled::add, tasks::add, 2, OverflowPolicy.COALESCE);
+        Event first = new FirstEvent(null);
+        Event second = new SecondEvent(null);
+        Event third = new SecondEvent(null);
+        Event fourth = new FirstEvent(null);
+        listener.handle(first);
+        listener.handle(second);
+        listener.handle(third); // replaces the second
+        assertEquals(1, listener.coalescedEvents());
+        listener.handle(new EventBusTest.SourcedEvent(null)); // nothing to coalesce with, so the first is dropped
+        assertEquals(1, listener.droppedEvents());
+        assertEquals(2, listener.queueDepth());
+        tasks.poll().run();
+        assertEquals(2, handled.size());
+        assertSame(third, handled.get(0));
+        listener.handle(fourth);
+        tasks.poll().run();
+        assertSame(fourth, handled.get(2));
+        assertEquals(3, listener.handledEvents());
+    }
+
+    @Test
+    public void testInterruptedBlockDropsTheEvent() {
+        ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        AsyncListener listener = new AsyncListener(e -> true, tasks::add, 1, OverflowPolicy.BLOCK);
+        listener.handle(new FirstEvent(null));
+        Thread.currentThread().interrupt();
+        listener.handle(new FirstEvent(null));
+        assertTrue(Thread.interrupted());
+        assertEquals(1, listener.queueDepth());
+        assertEquals(1, listener.droppedEvents());
+    }
+}
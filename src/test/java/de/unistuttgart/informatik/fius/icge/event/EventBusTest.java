@@ -0,0 +1,120 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the delivery of events by `EventBus`es
+ */
+public class EventBusTest {
+
+    @Test
+    public void testListenersForAllSourcesRunInParallel() throws InterruptedException {
+        Source first = new Source();
+        Source second = new Source();
+        CountDownLatch secondHandled = new CountDownLatch(1);
+        boolean[] waited = new boolean[1];
+        try (EventHandler handler = new EventHandler()) {
+            EventDispatcher.registerHandler(handler);
+            handler.addListener(FirstEvent.class, e -> {
+                try {
+                    waited[0] = secondHandled.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return true;
+            });
+            handler.addListener(SecondEvent.class, e -> {
+                secondHandled.countDown();
+                return true;
+            });
+            Thread thread = new Thread(() -> EventDispatcher.raise(new FirstEvent(first)));
+            thread.start();
+            Thread.sleep(50); // such that the first listener is waiting
+            EventDispatcher.raise(new SecondEvent(second));
+            thread.join();
+        }
+        assertTrue(waited[0]);
+    }
+
+    @Test
+    public void testEveryListenerHandlesOneEventAtATime() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger handled = new AtomicInteger();
+        try (EventHandler handler = new EventHandler()) {
+            EventDispatcher.registerHandler(handler);
+            handler.addListener(FirstEvent.class, e -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.yield();
+                running.decrementAndGet();
+                handled.incrementAndGet();
+                return true;
+            });
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                Source source = new Source();
+                Thread thread = new Thread(() -> {
+                    for (int j = 0; j < 1000; ++j) {
+                        EventDispatcher.raise(new FirstEvent(source));
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        assertEquals(8000, handled.get());
+        assertEquals(1, maxRunning.get());
+    }
+
+    static final class Source implements EventSource {
+        private final EventBus _bus = new EventBus();
+
+        @Override
+        public EventBus eventBus() {
+            return this._bus;
+        }
+    }
+
+    static class SourcedEvent implements Event {
+        private final Object _source;
+
+        SourcedEvent(Object source) {
+            this._source = source;
+        }
+
+        @Override
+        public Object source() {
+            return this._source;
+        }
+    }
+
+    static final class FirstEvent extends SourcedEvent {
+        FirstEvent(Object source) {
+            super(source);
+        }
+    }
+
+    static final class SecondEvent extends SourcedEvent {
+        SecondEvent(Object source) {
+            super(source);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.informatik.fius.icge.event.EventBusTest.FirstEvent;
+import de.unistuttgart.informatik.fius.icge.event.EventBusTest.SecondEvent;
+
+/**
+ * Tests the order in which events raised during the handling of another event are handled
+ */
+public class EventDispatcherTest {
+
+    @Test
+    public void testNestedRaisesAreHandledInFifoOrder() {
+        EventBusTest.Source source = new EventBusTest.Source();
+        ArrayList<String> log = new ArrayList<>();
+        try (EventHandler handler = new EventHandler()) {
+            EventDispatcher.registerHandler(handler);
+            handler.addListener(FirstEvent.class, source, e -> {
+                log.add("first");
+                EventDispatcher.raise(new SecondEvent(source), () -> log.add("after second"));
+                EventDispatcher.afterwards(() -> log.add("afterwards"));
+                EventDispatcher.raise(new SecondEvent(null));
+                log.add("first done");
+                return true;
+            });
+            handler.addListener(SecondEvent.class, e -> {
+                log.add(e.source() == null ? "global second" : "second");
+                return true;
+            });
+            EventDispatcher.raise(new FirstEvent(source), () -> log.add("after first"));
+        }
+        assertEquals(Arrays.asList("first", "first done", "after first", "second", "after second", "afterwards",
+                "global second"), log);
+    }
+
+    @Test
+    public void testAfterwardsNeedsAnActiveRaise() {
+        assertThrows(EventDispatcher.RaiseNotActive.class, () -> EventDispatcher.afterwards(() -> {}));
+    }
+}
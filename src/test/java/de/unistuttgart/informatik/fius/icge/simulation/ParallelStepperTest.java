@@ -0,0 +1,64 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * Tests stepping `Entity`s with a `ParallelStepper`
+ */
+public class ParallelStepperTest {
+
+    @Test
+    public void testStepFunctionsMayCallTheSimulation() {
+        Simulation sim = new Simulation(new Territory());
+        ArrayList<Mario> marios = new ArrayList<>();
+        for (int i = 0; i < 8; ++i) {
+            Mario mario = new Mario(sim);
+            mario.forceSpawn(0, i, Direction.EAST);
+            marios.add(mario);
+        }
+        ParallelStepper stepper = new ParallelStepper(sim);
+        for (Mario mario : marios) {
+            stepper.add(mario, m -> {
+                sim.tickMillis(); // synchronized
+                return m.proposeMove();
+            });
+        }
+        stepper.start();
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> stepper.run(5));
+        for (Mario mario : marios) {
+            assertEquals(5, mario.getColumn());
+        }
+    }
+
+    @Test
+    public void testEnteringTheSameCell() {
+        Simulation sim = new Simulation(new Territory());
+        Mario first = new Mario(sim);
+        first.forceSpawn(0, 0, Direction.EAST);
+        Mario second = new Mario(sim);
+        second.forceSpawn(2, 0, Direction.WEST);
+        ParallelStepper stepper = new ParallelStepper(sim);
+        stepper.add(first, Mario::proposeMove);
+        stepper.add(second, Mario::proposeMove);
+        stepper.start();
+        stepper.run(1);
+        assertEquals(1, first.getColumn());
+        assertEquals(2, second.getColumn());
+    }
+}
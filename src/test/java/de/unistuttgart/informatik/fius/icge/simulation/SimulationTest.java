@@ -0,0 +1,243 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.simulation;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.informatik.fius.icge.event.EventDispatcher;
+import de.unistuttgart.informatik.fius.icge.event.EventHandler;
+import de.unistuttgart.informatik.fius.icge.simulation.Entity.EntityEvent;
+import de.unistuttgart.informatik.fius.icge.simulation.MovableEntity.MoveEvent;
+import de.unistuttgart.informatik.fius.icge.territory.Territory;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject;
+import de.unistuttgart.informatik.fius.icge.territory.WorldObject.Direction;
+
+/**
+ * Tests snapshots and the history of a `Simulation` and the queries while changes are pending
+ */
+public class SimulationTest {
+
+    @Test
+    public void testSnapshotAndRestore() {
+        Simulation sim = new Simulation(new Territory());
+        Mario mario = new Mario(sim);
+        mario.forceSpawn(0, 0, Direction.EAST);
+        new Wall(sim).forceSpawn(5, 3);
+        ParallelStepper stepper = new ParallelStepper(sim);
+        stepper.add(mario, Mario::proposeMove);
+        stepper.start();
+        stepper.run(2);
+
+        Simulation.Snapshot snapshot = sim.snapshot();
+        Territory before = sim.territory();
+        ArrayList<MoveEvent> positions = positions(mario);
+        stepper.run(3);
+        assertEquals(5, mario.getColumn());
+        assertEquals(positions.size() + 3, positions(mario).size());
+
+        sim.restore(snapshot);
+        assertTerritoryEquals(before, sim.territory());
+        assertEquals(2, mario.getColumn());
+        assertEquals(positions, positions(mario));
+        assertEquals(snapshot.tickCount(), sim.tickCount());
+        stepper.run(1); // appending after a restore doesn't change the positions of the snapshot
+        assertEquals(positions.size() + 1, positions(mario).size());
+        sim.restore(snapshot);
+        assertEquals(positions, positions(mario));
+    }
+
+    @Test
+    public void testFork() {
+        Simulation sim = new Simulation(new Territory());
+        Mario mario = new Mario(sim);
+        mario.forceSpawn(0, 0, Direction.SOUTH);
+        ParallelStepper stepper = new ParallelStepper(sim);
+        stepper.add(mario, Mario::proposeMove);
+        stepper.start();
+        stepper.run(4);
+
+        Simulation fork = sim.fork();
+        assertTerritoryEquals(sim.territory(), fork.territory());
+        Mario copy = fork.entitiesOfType(Mario.class).get(0);
+        ArrayList<MoveEvent> original = positions(mario);
+        ArrayList<MoveEvent> copied = positions(copy);
+        assertEquals(original.size(), copied.size());
+        for (int i = 0; i < original.size(); ++i) {
+            assertSame(fork, copied.get(i).simulation);
+            assertSame(copy, copied.get(i).entity);
+            assertEquals(original.get(i).column, copied.get(i).column);
+            assertEquals(original.get(i).row, copied.get(i).row);
+        }
+    }
+
+    @Test
+    public void testQueriesSeePendingChanges() {
+        Simulation sim = new Simulation(new Territory());
+        Mario mario = new Mario(sim);
+        mario.forceSpawn(0, 0);
+        Coin coin = new Coin(sim);
+        Territory committed = sim.territory();
+        sim.batch(tx -> {
+            WorldObject moved = new WorldObject(mario.state(), 1, 0);
+            tx.setWorldObject(mario, moved, null);
+            tx.setWorldObject(coin, new WorldObject(coin.state(), 2, 0), null);
+            assertSame(mario, sim.entity(moved));
+            assertEquals(1, sim.entitiesAt(1, 0).size());
+            assertTrue(sim.entitiesAt(0, 0).isEmpty());
+            assertTrue(sim.containsCollectableAt(2, 0));
+            assertEquals(2, sim.entities().size());
+            assertEquals(1, sim.collectables().size());
+            assertEquals(1, committed.size());
+            assertEquals(2, sim.territory().size());
+            tx.setWorldObject(coin, null, null);
+            assertTrue(sim.collectables().isEmpty());
+            assertEquals(1, sim.entities().size());
+        });
+        assertEquals(1, sim.territory().size());
+        assertSame(mario, sim.entitiesAt(1, 0).get(0));
+    }
+
+    @Test
+    public void testFastForwardMatchesTimer() throws InterruptedException {
+        assertEquals(runPrograms(false), runPrograms(true));
+    }
+
+    /**
+     * Runs two programs that compute a little between their actions, contending for a lock, and records the tick and type of every event of their
+     * `Entity`s
+     */
+    static ArrayList<String> runPrograms(boolean fastForward) throws InterruptedException {
+        Simulation sim = new Simulation(new Territory());
+        sim.setTickMillis(10);
+        sim.setFastForward(fastForward);
+        ArrayList<String> log = new ArrayList<>();
+        ProgramRunner runner = new ProgramRunner("test");
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        try (EventHandler handler = new EventHandler()) {
+            EventDispatcher.registerHandler(handler);
+            handler.addListener(EntityEvent.class, sim, e -> {
+                EntityEvent ev = (EntityEvent) e;
+                log.add(ev.entity.id() + "@" + sim.tickCount() + ":" + ev.getClass().getSimpleName());
+                return true;
+            });
+            for (int i = 0; i < 2; ++i) {
+                Mario mario = new Mario(sim);
+                mario.forceSpawn(0, i * 10, Direction.EAST);
+                mario.setDelay(2 + i);
+                mario.turnLeft(); // runs at once, since the entity is free
+                runner.start(() -> {
+                    threads.add(Thread.currentThread());
+                    for (int j = 0; j < 12; ++j) {
+                        synchronized (runner) { // the other program may be blocked meanwhile
+                            spin(200_000);
+                        }
+                        if ((j % 3) == 0) {
+                            mario.turnLeft();
+                        } else {
+                            mario.move();
+                        }
+                    }
+                });
+            }
+            // a program that hasn't waited for its first action doesn't hold back the clock, so let both wait before resuming
+            while ((threads.size() < 2) || !threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+                Thread.sleep(1);
+            }
+            sim.resume();
+            runner.awaitAll();
+            sim.pause();
+        }
+        log.sort(null); // the events of different entities in the same tick may be raised in any order
+        return log;
+    }
+
+    @Test
+    public void testHistory() {
+        Simulation sim = new Simulation(new Territory());
+        Mario mario = new Mario(sim);
+        mario.forceSpawn(0, 0, Direction.EAST);
+        ParallelStepper stepper = new ParallelStepper(sim);
+        stepper.add(mario, Mario::proposeMove);
+        stepper.start();
+        SimulationHistory history = new SimulationHistory(sim, 8, 3);
+        history.start();
+        HashMap<Integer, Territory> captured = new HashMap<>();
+        captured.put(sim.tickCount(), sim.territory());
+        for (int i = 0; i < 8; ++i) {
+            stepper.run(1);
+            captured.put(sim.tickCount(), sim.territory());
+        }
+        assertEquals(0, history.oldestTick());
+        assertEquals(7, history.newestTick()); // the current tick hasn't ended yet
+        assertHistoryEquals(captured, history);
+
+        history.rewind(4); // between the keyframes of the ticks 3 and 6
+        assertEquals(4, sim.tickCount());
+        assertEquals(3, history.newestTick()); // the tick 4 is the current one again
+        assertTerritoryEquals(captured.get(4), sim.territory());
+        assertEquals(4, mario.getColumn());
+        new Coin(sim).forceSpawn(2, 2); // continues the changes during the tick 4
+        captured.put(sim.tickCount(), sim.territory());
+        stepper.run(1);
+        captured.put(sim.tickCount(), sim.territory());
+        assertHistoryEquals(captured, history);
+        assertEquals(2, history.territoryAt(4).size());
+        for (int i = 0; i < 15; ++i) {
+            stepper.run(1);
+            captured.put(sim.tickCount(), sim.territory());
+        }
+        assertEquals(20, mario.getColumn());
+        assertEquals(19, history.newestTick());
+        // the keyframe of the tick 9 is the latest one that keeps the last 8 ticks
+        assertEquals(9, history.oldestTick());
+        assertHistoryEquals(captured, history);
+        assertThrows(IllegalArgumentException.class, () -> history.territoryAt(8));
+    }
+
+    static void assertHistoryEquals(Map<Integer, Territory> expected, SimulationHistory history) {
+        for (int t = history.oldestTick(); t <= history.newestTick(); ++t) {
+            assertTerritoryEquals(expected.get(t), history.territoryAt(t));
+        }
+    }
+
+    static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            // busy
+        }
+    }
+
+    static ArrayList<MoveEvent> positions(MovableEntity ent) {
+        ArrayList<MoveEvent> result = new ArrayList<>();
+        ent.positionHistory().forEach(result::add);
+        return result;
+    }
+
+    static void assertTerritoryEquals(Territory expected, Territory actual) {
+        ArrayList<WorldObject> e = expected.worldObjects();
+        ArrayList<WorldObject> a = actual.worldObjects();
+        assertEquals(e.size(), a.size());
+        for (int i = 0; i < e.size(); ++i) {
+            assertEquals(e.get(i).state.getClass(), a.get(i).state.getClass());
+            assertEquals(e.get(i).column, a.get(i).column);
+            assertEquals(e.get(i).row, a.get(i).row);
+            assertSame(e.get(i).direction, a.get(i).direction);
+        }
+    }
+}
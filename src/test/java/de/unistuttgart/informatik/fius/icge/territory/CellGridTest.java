@@ -0,0 +1,108 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the `CellGrid` against a `HashMap` from cells to their `WorldObject`s
+ */
+public class CellGridTest {
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(9);
+        CellGrid grid = CellGrid.EMPTY;
+        HashMap<Long, WorldObject[]> expected = new HashMap<>();
+        for (int i = 0; i < 5000; ++i) {
+            int column = random.nextInt(200) - 100;
+            int row = random.nextInt(200) - 100;
+            if (random.nextInt(4) == 0) {
+                grid = grid.put(column, row, null);
+                expected.remove(key(column, row));
+            } else {
+                WorldObject[] cell = new WorldObject[1 + random.nextInt(3)];
+                for (int j = 0; j < cell.length; ++j) {
+                    cell[j] = new WorldObject(TerritoryTest.STATE, column, row);
+                }
+                grid = grid.put(column, row, cell);
+                expected.put(key(column, row), cell);
+            }
+        }
+        for (int column = -110; column < 110; ++column) {
+            for (int row = -110; row < 110; ++row) {
+                WorldObject[] cell = grid.get(column, row);
+                WorldObject[] expectedCell = expected.get(key(column, row));
+                if (expectedCell == null) {
+                    assertTrue((cell == null) || (cell.length == 0));
+                } else {
+                    assertArrayEquals(expectedCell, cell);
+                }
+            }
+        }
+        for (int i = 0; i < 200; ++i) {
+            int minColumn = random.nextInt(240) - 120;
+            int minRow = random.nextInt(240) - 120;
+            int maxColumn = minColumn + random.nextInt(120);
+            int maxRow = minRow + random.nextInt(120);
+            ArrayList<WorldObject> inside = new ArrayList<>();
+            for (WorldObject[] cell : expected.values()) {
+                WorldObject wob = cell[0];
+                if ((wob.column >= minColumn) && (wob.column <= maxColumn) && (wob.row >= minRow) && (wob.row <= maxRow)) {
+                    for (WorldObject w : cell) {
+                        inside.add(w);
+                    }
+                }
+            }
+            ArrayList<WorldObject> found = new ArrayList<>();
+            grid.forEachIn(minColumn, minRow, maxColumn, maxRow, found::add);
+            assertEquals(inside.size(), found.size());
+            assertTrue(found.containsAll(inside));
+            assertEquals(inside.size(), grid.countIn(minColumn, minRow, maxColumn, maxRow));
+        }
+        Bounds bounds = grid.bounds();
+        int minColumn = Integer.MAX_VALUE;
+        int maxRow = Integer.MIN_VALUE;
+        for (WorldObject[] cell : expected.values()) {
+            minColumn = Math.min(minColumn, cell[0].column);
+            maxRow = Math.max(maxRow, cell[0].row);
+        }
+        assertEquals(minColumn, bounds.minColumn);
+        assertEquals(maxRow, bounds.maxRow);
+    }
+
+    @Test
+    public void testOf() {
+        Random random = new Random(13);
+        WorldObject[] wobs = new WorldObject[3000];
+        for (int i = 0; i < wobs.length; ++i) {
+            wobs[i] = new WorldObject(TerritoryTest.STATE, random.nextInt(300) - 150, random.nextInt(300) - 150);
+        }
+        CellGrid grid = CellGrid.of(wobs);
+        assertEquals(wobs.length, grid.countIn(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE));
+        for (WorldObject wob : wobs) {
+            boolean found = false;
+            for (WorldObject w : grid.get(wob.column, wob.row)) {
+                found |= w == wob;
+            }
+            assertTrue(found);
+        }
+    }
+
+    static long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the `LongHashTrie` against a `HashMap`
+ */
+public class LongHashTrieTest {
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(5);
+        LongHashTrie<Integer> trie = LongHashTrie.empty();
+        HashMap<Long, Integer> expected = new HashMap<>();
+        ArrayList<LongHashTrie<Integer>> versions = new ArrayList<>();
+        ArrayList<HashMap<Long, Integer>> expectedVersions = new ArrayList<>();
+        for (int i = 0; i < 20000; ++i) {
+            long key = randomKey(random);
+            if (random.nextInt(3) == 0) {
+                trie = trie.remove(key);
+                expected.remove(key);
+            } else {
+                trie = trie.put(key, i);
+                expected.put(key, i);
+            }
+            if ((i % 1000) == 0) {
+                versions.add(trie);
+                expectedVersions.add(new HashMap<>(expected));
+            }
+        }
+        assertTrie(expected, trie);
+        // the older versions are unchanged
+        for (int i = 0; i < versions.size(); ++i) {
+            assertTrie(expectedVersions.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    public void testUnchangedTrieIsReturned() {
+        LongHashTrie<String> trie = LongHashTrie.<String>empty().put(1, "a").put(-1, "b");
+        assertSame(trie, trie.remove(2));
+        assertSame(trie, trie.put(3, null));
+        assertEquals(0, trie.remove(1).remove(-1).size());
+        assertEquals(null, trie.remove(1).remove(-1).get(1));
+    }
+
+    static long randomKey(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return random.nextInt(64) - 32; // small keys share the first levels
+            case 1:
+                return ((long) (random.nextInt(16) - 8) << 32) | ((random.nextInt(16) - 8) & 0xFFFFFFFFL); // chunk keys
+            case 2:
+                return random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE;
+            default:
+                return random.nextLong() % 5000;
+        }
+    }
+
+    static void assertTrie(HashMap<Long, Integer> expected, LongHashTrie<Integer> trie) {
+        assertEquals(expected.size(), trie.size());
+        expected.forEach((key, value) -> assertEquals(value, trie.get(key)));
+        HashMap<Long, Integer> entries = new HashMap<>();
+        trie.forEach((key, value) -> assertEquals(null, entries.put(key, value)));
+        assertEquals(expected, entries);
+    }
+}
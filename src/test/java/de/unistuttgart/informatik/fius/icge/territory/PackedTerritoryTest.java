@@ -0,0 +1,86 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a `PackedTerritory` answers all queries like the `Territory` it was created from
+ */
+public class PackedTerritoryTest {
+
+    @Test
+    public void testQueries() {
+        Random random = new Random(11);
+        Territory.Builder builder = new Territory.Builder();
+        for (int i = 0; i < 3000; ++i) {
+            builder.add(TerritoryTest.randomWorldObject(random));
+            builder.add(new WorldObject(TerritoryTest.STATE, random.nextInt(1000) - 500, random.nextInt(1000) - 500));
+        }
+        Territory tty = builder.result();
+        PackedTerritory packed = new PackedTerritory(tty);
+        assertEquals(tty.size(), packed.size());
+        assertEqualValues(tty.worldObjects(), packed.worldObjects());
+        assertEqualValues(tty.worldObjects(), packed.unpack().worldObjects());
+        for (int column = -1; column < 9; ++column) {
+            for (int row = -1; row < 9; ++row) {
+                assertEqualValues(tty.worldObjectsAt(column, row), packed.worldObjectsAt(column, row));
+                assertEquals(tty.containsAt(column, row), packed.containsAt(column, row));
+                assertEquals(tty.isSolidAt(column, row), packed.isSolidAt(column, row));
+            }
+        }
+        for (int i = 0; i < 200; ++i) {
+            int minColumn = random.nextInt(1200) - 600;
+            int minRow = random.nextInt(1200) - 600;
+            int maxColumn = minColumn + random.nextInt(300);
+            int maxRow = minRow + random.nextInt(300);
+            assertEqualValues(tty.worldObjectsIn(minColumn, minRow, maxColumn, maxRow),
+                    packed.worldObjectsIn(minColumn, minRow, maxColumn, maxRow));
+            assertEquals(tty.countIn(minColumn, minRow, maxColumn, maxRow), packed.countIn(minColumn, minRow, maxColumn, maxRow));
+        }
+        assertEquals(tty.countIn(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE),
+                packed.countIn(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE));
+        Bounds bounds = packed.bounds();
+        assertEquals(tty.bounds().minColumn, bounds.minColumn);
+        assertEquals(tty.bounds().maxRow, bounds.maxRow);
+    }
+
+    @Test
+    public void testManyDistinctStates() {
+        Territory.Builder builder = new Territory.Builder();
+        for (int i = 0; i < 70000; ++i) {
+            builder.add(new WorldObject(new TerritoryTest.TestState((i % 7) == 0), i % 300, i / 300));
+        }
+        Territory tty = builder.result();
+        PackedTerritory packed = new PackedTerritory(tty);
+        ArrayList<WorldObject> expected = tty.worldObjects();
+        ArrayList<WorldObject> actual = packed.worldObjects();
+        assertEqualValues(expected, actual);
+        assertEquals(tty.isSolidAt(299, 233), packed.isSolidAt(299, 233));
+        assertEquals(tty.isSolidAt(0, 0), packed.isSolidAt(0, 0));
+    }
+
+    static void assertEqualValues(ArrayList<WorldObject> expected, ArrayList<WorldObject> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            WorldObject e = expected.get(i);
+            WorldObject a = actual.get(i);
+            assertSame(e.state, a.state);
+            assertEquals(e.column, a.column);
+            assertEquals(e.row, a.row);
+            assertEquals(e.z, a.z);
+            assertSame(e.direction, a.direction);
+        }
+    }
+}
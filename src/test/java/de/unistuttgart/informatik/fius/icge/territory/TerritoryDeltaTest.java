@@ -0,0 +1,98 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that `TerritoryDelta.between` and `Territory.apply` round-trip
+ */
+public class TerritoryDeltaTest {
+
+    @Test
+    public void testRoundTrips() {
+        Random random = new Random(17);
+        Territory base = new Territory();
+        for (int i = 0; i < 2000; ++i) {
+            base = base.add(TerritoryTest.randomWorldObject(random));
+        }
+        // few changes are applied one by one, many in bulk
+        for (int changes : new int[] { 1, 10, 100, 1000, 3000 }) {
+            Territory changed = randomlyChanged(base, changes, random);
+            TerritoryDelta forward = TerritoryDelta.between(base, changed);
+            assertSameSet(changed, base.apply(forward));
+            TerritoryDelta backward = TerritoryDelta.between(changed, base);
+            assertSameSet(base, changed.apply(backward));
+            assertEquals(forward.added().size(), backward.removed().size());
+            assertEquals(forward.removed().size(), backward.added().size());
+            assertTrue(forward.replaced().isEmpty());
+        }
+    }
+
+    @Test
+    public void testBetweenEqualTerritories() {
+        Territory tty = new Territory().add(new WorldObject(TerritoryTest.STATE, 1, 2));
+        assertSame(TerritoryDelta.EMPTY, TerritoryDelta.between(tty, tty));
+        WorldObject wob = new WorldObject(TerritoryTest.STATE, 3, 4);
+        // removed and added again in between isn't a change
+        assertTrue(TerritoryDelta.between(tty.add(wob), tty.add(wob).remove(wob).add(wob)).isEmpty());
+    }
+
+    @Test
+    public void testApplyReplacements() {
+        WorldObject a = new WorldObject(TerritoryTest.STATE, 0, 0);
+        WorldObject b = new WorldObject(TerritoryTest.STATE, 5, 5);
+        Territory tty = new Territory().add(a);
+        Territory result = tty.apply(TerritoryDelta.replaced(a, b));
+        assertTrue(!result.contains(a));
+        assertTrue(result.contains(b));
+        assertThrows(IllegalArgumentException.class, () -> tty.apply(TerritoryDelta.removed(b)));
+        assertThrows(IllegalArgumentException.class, () -> tty.apply(TerritoryDelta.replaced(b, a)));
+    }
+
+    static Territory randomlyChanged(Territory tty, int changes, Random random) {
+        for (int i = 0; i < changes; ++i) {
+            ArrayList<WorldObject> wobs = tty.worldObjects();
+            int op = wobs.isEmpty() ? 0 : random.nextInt(3);
+            if (op == 0) {
+                tty = tty.add(TerritoryTest.randomWorldObject(random));
+            } else if (op == 1) {
+                tty = tty.remove(wobs.get(random.nextInt(wobs.size())));
+            } else {
+                tty = tty.replace(wobs.get(random.nextInt(wobs.size())), TerritoryTest.randomWorldObject(random));
+            }
+        }
+        return tty;
+    }
+
+    /**
+     * Asserts that two territories contain the same `WorldObject`s, whose order may only differ among equal ones
+     */
+    static void assertSameSet(Territory expected, Territory actual) {
+        ArrayList<WorldObject> e = expected.worldObjects();
+        ArrayList<WorldObject> a = actual.worldObjects();
+        assertEquals(e.size(), a.size());
+        Set<WorldObject> set = Collections.newSetFromMap(new IdentityHashMap<>());
+        set.addAll(e);
+        for (int i = 0; i < a.size(); ++i) {
+            assertTrue(set.contains(a.get(i)));
+            assertEquals(0, e.get(i).compareTo(a.get(i)));
+        }
+    }
+}
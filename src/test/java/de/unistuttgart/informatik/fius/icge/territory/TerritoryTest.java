@@ -0,0 +1,297 @@
+/*
+ * This source file is part of the FIUS ICGE project.
+ * For more information see github.com/neumantm/ICGE
+ *
+ * Copyright (c) 2018 the ICGE project authors.
+ */
+
+package de.unistuttgart.informatik.fius.icge.territory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import org.junit.jupiter.api.Test;
+
+import de.unistuttgart.informatik.fius.icge.simulation.Entity;
+import de.unistuttgart.informatik.fius.icge.simulation.Simulation;
+
+/**
+ * Tests the `Territory` against a sorted `ArrayList`, which is how the `Territory` used to be implemented
+ */
+public class TerritoryTest {
+
+    static final EntityState STATE = new TestState(false);
+    static final EntityState SOLID = new TestState(true);
+
+    @Test
+    public void testEmpty() {
+        Territory tty = new Territory();
+        assertTrue(tty.isEmpty());
+        assertEquals(0, tty.size());
+        assertEquals(null, tty.bounds());
+        assertEquals(new ArrayList<>(), tty.worldObjects());
+        assertEquals(new ArrayList<>(), tty.worldObjectsAt(0, 0));
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(42);
+        Territory tty = new Territory();
+        ArrayList<WorldObject> expected = new ArrayList<>();
+        for (int i = 0; i < 3000; ++i) {
+            int op = expected.isEmpty() ? 0 : random.nextInt(10);
+            if (op < 5) {
+                WorldObject wob = randomWorldObject(random);
+                tty = tty.add(wob);
+                expected.add(wob);
+            } else if (op < 8) {
+                WorldObject oldWob = expected.get(random.nextInt(expected.size()));
+                WorldObject newWob = random.nextBoolean() ? randomWorldObject(random)
+                        : new WorldObject(oldWob.state, oldWob.column, oldWob.row, oldWob.z, WorldObject.Direction.NORTH);
+                tty = tty.replace(oldWob, newWob);
+                expected.set(indexOf(expected, oldWob), newWob);
+            } else if (op < 9) {
+                WorldObject wob = expected.get(random.nextInt(expected.size()));
+                tty = tty.remove(wob);
+                expected.remove(indexOf(expected, wob));
+            } else {
+                int column = random.nextInt(8);
+                tty = tty.removeAt(column, column);
+                expected.removeIf(WorldObject.predicateIsAt(column, column));
+            }
+            expected.sort(WorldObject::compareTo);
+            assertTerritory(expected, tty);
+        }
+    }
+
+    @Test
+    public void testReplaceKeepsOrderOfEqualWorldObjects() {
+        WorldObject a = new WorldObject(STATE, 1, 1);
+        WorldObject b = new WorldObject(STATE, 1, 1);
+        WorldObject c = new WorldObject(STATE, 1, 1);
+        Territory tty = new Territory().add(a).add(b).add(c);
+        WorldObject turned = new WorldObject(STATE, 1, 1, WorldObject.Direction.SOUTH);
+        tty = tty.replace(a, turned);
+        assertSameElements(list(turned, b, c), tty.worldObjectsAt(1, 1));
+        assertSameElements(list(turned, b, c), tty.worldObjects());
+
+        // an object that moves from a lesser cell comes first, one from a greater cell last
+        WorldObject before = new WorldObject(STATE, 0, 1);
+        WorldObject after = new WorldObject(STATE, 2, 1);
+        tty = tty.add(before).add(after);
+        WorldObject fromBefore = new WorldObject(STATE, 1, 1);
+        WorldObject fromAfter = new WorldObject(STATE, 1, 1);
+        tty = tty.replace(before, fromBefore).replace(after, fromAfter);
+        assertSameElements(list(fromBefore, turned, b, c, fromAfter), tty.worldObjectsAt(1, 1));
+        assertSameElements(list(fromBefore, turned, b, c, fromAfter), tty.worldObjects());
+    }
+
+    @Test
+    public void testUnknownWorldObject() {
+        Territory tty = new Territory().add(new WorldObject(STATE, 0, 0));
+        WorldObject unknown = new WorldObject(STATE, 0, 0);
+        assertThrows(IllegalArgumentException.class, () -> tty.remove(unknown));
+        assertThrows(IllegalArgumentException.class, () -> tty.replace(unknown, unknown));
+        assertSame(tty, tty.removeIf(wob -> false));
+        assertSame(tty, tty.removeAt(5, 5));
+    }
+
+    @Test
+    public void testSolid() {
+        WorldObject wall = new WorldObject(SOLID, 3, 4);
+        WorldObject otherWall = new WorldObject(SOLID, 3, 4);
+        Territory tty = new Territory().add(wall).add(otherWall).add(new WorldObject(STATE, 5, 5));
+        assertTrue(tty.isSolidAt(3, 4));
+        assertTrue(!tty.isSolidAt(5, 5));
+        tty = tty.remove(wall);
+        assertTrue(tty.isSolidAt(3, 4));
+        tty = tty.replace(otherWall, new WorldObject(SOLID, -40, 70));
+        assertTrue(!tty.isSolidAt(3, 4));
+        assertTrue(tty.isSolidAt(-40, 70));
+    }
+
+    @Test
+    public void testRegions() {
+        Random random = new Random(7);
+        Territory.Builder builder = new Territory.Builder();
+        ArrayList<WorldObject> expected = new ArrayList<>();
+        for (int i = 0; i < 2000; ++i) {
+            WorldObject wob = new WorldObject(STATE, random.nextInt(200) - 100, random.nextInt(200) - 100);
+            builder.add(wob);
+            expected.add(wob);
+        }
+        expected.sort(WorldObject::compareTo);
+        Territory tty = builder.result();
+        assertTerritory(expected, tty);
+        for (int i = 0; i < 100; ++i) {
+            int minColumn = random.nextInt(240) - 120;
+            int minRow = random.nextInt(240) - 120;
+            int maxColumn = minColumn + random.nextInt(80);
+            int maxRow = minRow + random.nextInt(80);
+            Predicate<WorldObject> inRegion = wob -> (wob.column >= minColumn) && (wob.column <= maxColumn)
+                    && (wob.row >= minRow) && (wob.row <= maxRow);
+            ArrayList<WorldObject> inside = filter(expected, inRegion);
+            assertSameElements(inside, tty.worldObjectsIn(minColumn, minRow, maxColumn, maxRow));
+            assertEquals(inside.size(), tty.countIn(minColumn, minRow, maxColumn, maxRow));
+            int[] count = new int[1];
+            tty.forEachIn(minColumn, minRow, maxColumn, maxRow, wob -> {
+                assertTrue(inRegion.test(wob));
+                ++count[0];
+            });
+            assertEquals(inside.size(), count[0]);
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        Random random = new Random(3);
+        Territory.Builder builder = new Territory.Builder();
+        ArrayList<WorldObject> expected = new ArrayList<>();
+        for (int round = 0; round < 50; ++round) {
+            int adds = random.nextInt(round < 5 ? 200 : 20);
+            for (int i = 0; i < adds; ++i) {
+                WorldObject wob = new WorldObject(STATE, random.nextInt(10), random.nextInt(10));
+                builder.add(wob);
+                expected.add(wob);
+            }
+            int column = random.nextInt(10);
+            int row = random.nextInt(10);
+            if ((round % 2) == 0) {
+                builder.removeIf(WorldObject.predicateIsAt(column, row));
+            } else {
+                builder.removeAt(column, row);
+            }
+            expected.removeIf(WorldObject.predicateIsAt(column, row));
+            expected.sort(WorldObject::compareTo);
+            assertEquals(expected.size(), builder.size());
+            assertTerritory(expected, builder.result());
+        }
+        builder.clear();
+        assertTrue(builder.result().isEmpty());
+    }
+
+    @Test
+    public void testBuilderKeepsStructure() {
+        Territory.Builder builder = new Territory.Builder();
+        for (int i = 0; i < 3000; ++i) {
+            builder.add(new WorldObject(STATE, i % 30, i / 30));
+        }
+        Territory tty = builder.result();
+        WorldObject added = new WorldObject(STATE, 3, 3);
+        Territory.Builder derived = new Territory.Builder(tty).add(added);
+        assertSame(tty, new Territory.Builder(tty).result());
+        TerritoryDelta delta = TerritoryDelta.between(tty, derived.result());
+        assertSameElements(list(added), delta.added());
+        assertTrue(delta.removed().isEmpty());
+
+        // even a territory that is rebuilt at once keeps the order of the `WorldObject`s it started with
+        Territory.Builder rebuilt = new Territory.Builder(tty);
+        ArrayList<WorldObject> expected = tty.worldObjects();
+        for (int i = 0; i < 500; ++i) {
+            WorldObject wob = new WorldObject(STATE, i % 30, i / 30);
+            rebuilt.add(wob);
+            expected.add(wob);
+        }
+        expected.sort(WorldObject::compareTo);
+        assertTerritory(expected, rebuilt.result());
+        delta = TerritoryDelta.between(tty, rebuilt.result());
+        assertEquals(500, delta.added().size());
+        assertTrue(delta.removed().isEmpty());
+    }
+
+    // helpers
+
+    static WorldObject randomWorldObject(Random random) {
+        return new WorldObject(random.nextInt(5) == 0 ? SOLID : STATE, random.nextInt(8), random.nextInt(8),
+                random.nextInt(3));
+    }
+
+    /**
+     * Asserts that a territory contains exactly the expected `WorldObject`s in the expected order and that all indexes agree
+     */
+    static void assertTerritory(ArrayList<WorldObject> expected, Territory tty) {
+        assertEquals(expected.size(), tty.size());
+        assertSameElements(expected, tty.worldObjects());
+        ArrayList<WorldObject> iterated = new ArrayList<>();
+        tty.forEach(iterated::add);
+        assertSameElements(expected, iterated);
+        HashMap<Long, ArrayList<WorldObject>> cells = new HashMap<>();
+        for (WorldObject wob : expected) {
+            assertTrue(tty.contains(wob));
+            cells.computeIfAbsent(((long) wob.column << 32) | (wob.row & 0xffffffffL), key -> new ArrayList<>()).add(wob);
+        }
+        for (ArrayList<WorldObject> cell : cells.values()) {
+            WorldObject first = cell.get(0);
+            assertSameElements(cell, tty.worldObjectsAt(first.column, first.row));
+            assertEquals(contains(cell, wob -> wob.state.isSolid()), tty.isSolidAt(first.column, first.row));
+        }
+        if (!expected.isEmpty()) {
+            Bounds bounds = tty.bounds();
+            for (WorldObject wob : expected) {
+                assertTrue(bounds.contains(wob.column, wob.row));
+            }
+            assertTrue(contains(expected, wob -> wob.column == bounds.minColumn));
+            assertTrue(contains(expected, wob -> wob.column == bounds.maxColumn));
+            assertTrue(contains(expected, wob -> wob.row == bounds.minRow));
+            assertTrue(contains(expected, wob -> wob.row == bounds.maxRow));
+        }
+    }
+
+    static void assertSameElements(List<WorldObject> expected, List<WorldObject> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertSame(expected.get(i), actual.get(i), "at index " + i);
+        }
+    }
+
+    static ArrayList<WorldObject> list(WorldObject... wobs) {
+        ArrayList<WorldObject> result = new ArrayList<>();
+        for (WorldObject wob : wobs) {
+            result.add(wob);
+        }
+        return result;
+    }
+
+    static ArrayList<WorldObject> filter(ArrayList<WorldObject> wobs, Predicate<WorldObject> pred) {
+        ArrayList<WorldObject> result = new ArrayList<>(wobs);
+        result.removeIf(pred.negate());
+        return result;
+    }
+
+    static boolean contains(ArrayList<WorldObject> wobs, Predicate<WorldObject> pred) {
+        return wobs.stream().anyMatch(pred);
+    }
+
+    static int indexOf(ArrayList<WorldObject> wobs, WorldObject wob) {
+        for (int i = 0; i < wobs.size(); ++i) {
+            if (wobs.get(i) == wob) return i;
+        }
+        throw new IllegalArgumentException();
+    }
+
+    static final class TestState implements EntityState {
+        private final boolean _solid;
+
+        TestState(boolean solid) {
+            this._solid = solid;
+        }
+
+        @Override
+        public Entity createEntity(Simulation sim) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isSolid() {
+            return this._solid;
+        }
+    }
+}